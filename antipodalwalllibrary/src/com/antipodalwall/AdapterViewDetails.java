@@ -15,8 +15,9 @@ import android.os.Parcelable;
  *
  */
 class AdapterViewDetails implements Parcelable {
-	public final int width;
-	public final int height;
+	/** Not final - updated in place if the item changes size */
+	public int width;
+	public int height;
 	public final int index;
 
     /**
@@ -1,22 +1,78 @@
 package com.antipodalwall;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.database.DataSetObserver;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
 import android.graphics.Rect;
+import android.os.Build;
 import android.os.Parcelable;
+import android.os.SystemClock;
 import android.util.AttributeSet;
+import android.util.DisplayMetrics;
 import android.util.Log;
 import android.util.SparseArray;
 import android.view.MotionEvent;
+import android.view.VelocityTracker;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.widget.Adapter;
 import android.widget.AdapterView;
+import android.widget.Scroller;
 
 public class AntipodalWallLayout extends AdapterView<Adapter> {
 
+	/**
+	 * Interface definition for a callback to be invoked as the wall scrolls,
+	 * so that work such as image loading can be paused or lowered in
+	 * priority while the wall is moving fast.
+	 */
+	public interface OnScrollListener {
+		/** The wall is not moving */
+		public static final int SCROLL_STATE_IDLE = 0;
+
+		/** The user is dragging the wall with their finger */
+		public static final int SCROLL_STATE_DRAGGING = 1;
+
+		/** The wall is moving by itself after a fling */
+		public static final int SCROLL_STATE_SETTLING = 2;
+
+		/**
+		 * Called when the scroll state changes.
+		 *
+		 * @param wall The wall whose scroll state changed.
+		 * @param scrollState One of the SCROLL_STATE_* constants.
+		 */
+		public void onScrollStateChanged(AntipodalWallLayout wall, int scrollState);
+
+		/**
+		 * Called after the wall has scrolled, at most once per frame.
+		 *
+		 * @param wall The wall that scrolled.
+		 * @param firstVisiblePosition Adapter position of the first item
+		 *            on screen in any column.
+		 * @param lastVisiblePosition Adapter position of the last item on
+		 *            screen in any column.
+		 * @param totalItemCount Number of items in the adapter.
+		 */
+		public void onScroll(AntipodalWallLayout wall, int firstVisiblePosition,
+				int lastVisiblePosition, int totalItemCount);
+	}
+
     private static final String TAG = "AntipodalWall";
     private static final boolean DEBUG = true;
 
@@ -41,6 +97,69 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 	/** User is scrolling the list */
 	private static final int TOUCH_STATE_SCROLL = 2;
 
+	/** The adapter, or the data behind it, has changed */
+	private static final int DIRTY_DATA = 1;
+
+	/** The size of the layout has changed */
+	private static final int DIRTY_SIZE = 1 << 1;
+
+	/** The scroll offset has changed outside of a scroll step */
+	private static final int DIRTY_SCROLL = 1 << 2;
+
+	/** The number or width of columns has changed */
+	private static final int DIRTY_COLUMNS = 1 << 3;
+
+	/** Default memory budget for fling snapshot tiles, in screenfuls */
+	private static final int DEFAULT_SNAPSHOT_SCREENS = 2;
+
+	/** Colour of the placeholders drawn where there's no snapshot during a fast fling */
+	private static final int SNAPSHOT_PLACEHOLDER_COLOR = 0x20000000;
+
+	/** How long a detached view is kept around before it is fully removed, in ms */
+	private static final long SCRAP_LIFETIME_MS = 500;
+
+	/** Most views to keep detached at once */
+	private static final int MAX_SCRAP_VIEWS = 24;
+
+	/** Default most children attached at once, margins included */
+	private static final int DEFAULT_MAX_ATTACHED_CHILDREN = 64;
+
+	/** Default time filling the screen can spend binding views in a frame, in ms */
+	private static final int DEFAULT_FILL_BUDGET_MS = 8;
+
+	/** Most unused placeholder views to keep */
+	private static final int MAX_PLACEHOLDER_VIEWS = 16;
+
+	/** Most items bound ahead of time for where a fling will stop */
+	private static final int MAX_FLING_PREFETCH = 32;
+
+	/** Most items looked at when working out where a fling will stop */
+	private static final int MAX_FLING_PREDICTION_STEPS = 10000;
+
+	/**
+	 * Scroll speed, in screens per second, at which the extra layout space
+	 * has shifted as far ahead of the motion as it goes
+	 */
+	private static final int EXTRA_SPACE_FULL_SHIFT_SCREENS_PER_SECOND = 2;
+
+	/** Gap between scroll steps, in ms, after which the scroll is treated as having stopped */
+	private static final long SCROLL_VELOCITY_TIMEOUT_MS = 100;
+
+	/**
+	 * How far the wall can scroll from where its coordinates were last
+	 * rebased before they're rebased again
+	 */
+	private static final int REBASE_THRESHOLD = 1 << 15;
+
+	/** Number of column configurations to remember exact placements for */
+	private static final int MAX_PLACEMENT_SNAPSHOTS = 4;
+
+	/** Hidden views to keep as objects per column when compacting the rest */
+	private static final int HIDDEN_VIEWS_KEPT_ON_TRIM = 32;
+
+	/** Everything needs laying out again */
+	private static final int DIRTY_ALL = DIRTY_DATA | DIRTY_SIZE | DIRTY_SCROLL | DIRTY_COLUMNS;
+
 	/** The adapter with all the data */
 	private Adapter mAdapter;
 
@@ -53,6 +172,12 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 	/** Y-coordinate of the down event */
 	private int mTouchStartY;
 
+	/**
+	 * True if onInterceptTouchEvent(...) has already started the gesture
+	 * for the down event onTouchEvent(...) is about to be given
+	 */
+	private boolean mTouchStartedByIntercept;
+
 	/**
 	 * The adaptor position of the next visible item (that is, the next item
 	 * we're going to load from the adapter - it may not be currently drawn on the
@@ -60,8 +185,235 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 	 */
 	private int mNextItemPosition;
 
-	/** A list of cached (re-usable) item views */
-	private final LinkedList<View> mCachedItemViews = new LinkedList<View>();
+	/** Cached (re-usable) item views, by view type */
+	private final RecycleBin mRecycleBin = new RecycleBin();
+
+	/** Background pre-inflations that may still be running */
+	private final ArrayList<PreInflater> mPreInflaters = new ArrayList<PreInflater>();
+
+	/** Shared by every wall not given an executor of its own */
+	private static WallExecutor sDefaultExecutor;
+
+	/** Runs background work, null to use the shared default */
+	private WallExecutor mBackgroundExecutor;
+
+	/** Background tasks started and not yet delivered or cancelled */
+	private final HashSet<WallTask> mBackgroundTasks = new HashSet<WallTask>();
+
+	/** Background tasks finished since the last delivery, from any thread */
+	private final ConcurrentLinkedQueue<WallTask> mFinishedTasks = new ConcurrentLinkedQueue<WallTask>();
+
+	/** True if a delivery of finished tasks is scheduled */
+	private final AtomicBoolean mDeliveryPending = new AtomicBoolean();
+
+	/** Hands every background result that arrived since the last frame over */
+	private final Runnable mDeliverResultsRunnable = new Runnable() {
+		public void run() {
+			mDeliveryPending.set(false);
+			WallTask task;
+			while((task = mFinishedTasks.poll()) != null) {
+				if(mBackgroundTasks.remove(task) && !task.isCancelled())
+					task.onResult(task.getResult());
+			}
+		}
+	};
+
+	/** Views that have gone off screen recently, detached but not removed */
+	private final ScrapHeap mScrapHeap = new ScrapHeap(MAX_SCRAP_VIEWS);
+
+	/** Reusable list for views leaving the scrap heap */
+	private final ArrayList<ColumnView> mScrapBuffer = new ArrayList<ColumnView>();
+
+	/** True if mTrimScrapRunnable has been posted and not yet run */
+	private boolean mScrapTrimPending;
+
+	/** Fully removes views that have been in the scrap heap too long */
+	private final Runnable mTrimScrapRunnable = new Runnable() {
+		public void run() {
+			mScrapTrimPending = false;
+			mScrapBuffer.clear();
+			mScrapHeap.collectExpired(SystemClock.uptimeMillis() - SCRAP_LIFETIME_MS, mScrapBuffer);
+			for(ColumnView cv : mScrapBuffer) {
+				recycleView(cv);
+			}
+			mScrapBuffer.clear();
+			if(mScrapHeap.size() > 0) {
+				mScrapTrimPending = true;
+				postDelayed(this, SCRAP_LIFETIME_MS);
+			}
+		}
+	};
+
+	/** Scroll distance gathered from touch events since the last frame */
+	private int mPendingScrollDistance;
+
+	/** True if mScrollFrameRunnable has been posted and not yet run */
+	private boolean mScrollFramePending;
+
+	/** Number of touch samples (historical ones included) gathered into scroll frames */
+	private int mCoalescedScrollSamples;
+
+	/** Number of scroll passes actually run for those samples */
+	private int mScrollFrames;
+
+	/** Applies the scroll gathered since the last frame in a single pass */
+	private final Runnable mScrollFrameRunnable = new Runnable() {
+		public void run() {
+			mScrollFramePending = false;
+			int distance = mPendingScrollDistance;
+			mPendingScrollDistance = 0;
+			if (distance != 0 && mAdapter != null && mColumns != null) {
+				mScrollFrames++;
+				scrollList(distance);
+				flushScrollNotify();
+			}
+		}
+	};
+
+	/** Tells the scroll listener the wall has scrolled, once per frame */
+	private final Runnable mNotifyScrollRunnable = new Runnable() {
+		public void run() {
+			mScrollNotifyPending = false;
+			if (mAdapter == null)
+				return;
+			int first = getFirstVisiblePosition();
+			int last = getLastVisiblePosition();
+			if (mImageRequestScheduler != null) {
+				mImageRequestScheduler.onVisibleRangeChanged(first, last);
+			}
+			if (mAdapter instanceof WindowedAdapter) {
+				((WindowedAdapter<?>) mAdapter).onVisibleRangeChanged(first, last);
+			}
+			if (mOnScrollListener != null) {
+				mOnScrollListener.onScroll(AntipodalWallLayout.this, first, last,
+						mAdapter.getCount());
+			}
+		}
+	};
+
+	/** True if the wall has scrolled since the scroll listener was last told */
+	private boolean mScrollNotifyPending;
+
+	/** Scroll state listener, may be null */
+	private OnScrollListener mOnScrollListener;
+
+	/** Told what's on screen and which views are recycled, may be null */
+	private ImageRequestScheduler mImageRequestScheduler;
+
+	/** Current OnScrollListener.SCROLL_STATE_* */
+	private int mScrollState = OnScrollListener.SCROLL_STATE_IDLE;
+
+	/** Tracks the velocity of touch scrolling, so we can fling */
+	private VelocityTracker mVelocityTracker;
+
+	/** Works out where a fling is up to */
+	private final Scroller mScroller;
+
+	private final int mMinimumFlingVelocity;
+	private final int mMaximumFlingVelocity;
+
+	/** Extra space kept laid out either side of the screen, -1 for a quarter screen */
+	private int mExtraLayoutSpace = -1;
+
+	/** Extra space currently kept laid out above and below the screen */
+	private int mExtraSpaceAbove;
+	private int mExtraSpaceBelow;
+
+	/** Most children attached at once; margin views are dropped first */
+	private int mMaxAttachedChildren = DEFAULT_MAX_ATTACHED_CHILDREN;
+
+	/** Time filling may spend binding views per frame, in ms, or 0 for no limit */
+	private int mFillBudgetMs = DEFAULT_FILL_BUDGET_MS;
+
+	/** When this frame's fill started, or 0 if we're not filling */
+	private long mFillStart;
+
+	/** Colour of the placeholders for items not bound yet */
+	private int mPlaceholderColor = SNAPSHOT_PLACEHOLDER_COLOR;
+
+	/** Placeholder views not in use */
+	private final ArrayList<View> mPlaceholderViews = new ArrayList<View>();
+
+	/** True if mBindPlaceholdersRunnable has been posted and not yet run */
+	private boolean mBindPlaceholdersPending;
+
+	/** Binds as many placeholders as fit in a frame, nearest the screen first */
+	private final Runnable mBindPlaceholdersRunnable = new Runnable() {
+		public void run() {
+			mBindPlaceholdersPending = false;
+			bindPlaceholders();
+		}
+	};
+
+	/** Smoothed speed of recent scrolling, in pixels per second - negative for up */
+	private float mScrollVelocity;
+	private long mLastScrollTime;
+
+	/** Snapshots to draw during fast flings, null unless enabled */
+	private SnapshotTiles mSnapshotTiles;
+
+	/** Fling velocity above which snapshots are drawn instead of views, px/s */
+	private int mSnapshotVelocity;
+
+	/** True while snapshots are being drawn instead of views */
+	private boolean mSnapshotMode;
+
+	/** True if what's on screen should go into a snapshot tile on the next draw */
+	private boolean mSnapshotCapturePending;
+
+	/** Where the wall would be scrolled to while in snapshot mode */
+	private int mSnapshotScrollY;
+
+	private Paint mSnapshotPlaceholderPaint;
+
+	/** True to bind the items a fling will stop on while it's moving */
+	private boolean mFlingPrefetchEnabled = true;
+
+	/**
+	 * Items predicted to be on screen when the current fling stops, and
+	 * how many of them have been bound (or found to be bound already)
+	 */
+	private final int[] mFlingPrefetchPositions = new int[MAX_FLING_PREFETCH];
+	private int mFlingPrefetchCount;
+	private int mFlingPrefetchNext;
+
+	/** Scrolls one step of a fling each frame */
+	private final Runnable mFlingRunnable = new Runnable() {
+		public void run() {
+			if (mAdapter == null || mColumns == null || !mScroller.computeScrollOffset()) {
+				stopFling();
+				return;
+			}
+			if (mSnapshotTiles != null && getFlingVelocity() > mSnapshotVelocity) {
+				// Too fast for binding views to be worth it.
+				if (!mSnapshotMode)
+					enterSnapshotMode();
+				int maxScroll = (int) Math.max(getScrollOffset(), mHeightEstimator.getEstimatedHeight()
+						+ mPaddingT + mPaddingB - mParentHeight);
+				int y = Math.max(0, Math.min(mScroller.getCurrY(), maxScroll));
+				mSnapshotScrollY = (int) (y - mCoordinateBase);
+				invalidate();
+				if (y != mScroller.getCurrY() || mScroller.isFinished()) {
+					stopFling();
+				} else {
+					prefetchFlingDestination();
+					postOnNextFrame(this);
+				}
+				return;
+			}
+			if (mSnapshotMode)
+				exitSnapshotMode();
+			int distance = (int) (mScroller.getCurrY() - getScrollOffset());
+			boolean moved = distance == 0 || scrollList(distance);
+			flushScrollNotify();
+			if (!moved || mScroller.isFinished()) {
+				stopFling();
+			} else {
+				prefetchFlingDestination();
+				postOnNextFrame(this);
+			}
+		}
+	};
 
 	/** Used to check for long press actions */
 	private Runnable mLongPressRunnable;
@@ -70,10 +422,22 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 	private Rect mRect;
 	
 	/**
-	 * The scroll position of the list. Should never drop below 0.
-	 * This is how many pixels away from the 0 position we are.
+	 * The scroll position of the list, in the same coordinates as the
+	 * columns and the children - relative to {@link #mCoordinateBase}, so
+	 * it drops below 0 when scrolled above the last rebase.
 	 */
 	private int mScrolledPosition = 0;
+
+	/**
+	 * Distance from the top of the wall to where its coordinates are
+	 * measured from. Rebased every so often (every step, scrolling by child
+	 * offsets) so that the column and child coordinates stay small however
+	 * far down the wall is scrolled.
+	 */
+	private long mCoordinateBase;
+
+	/** True to scroll by moving the children rather than scrolling the view */
+	private boolean mChildOffsetScrolling;
 	
 	/** The default width spec of child items, for fitting into columns */
 	private int mChildWidthSpec;
@@ -121,6 +485,68 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 
 	private boolean mRestored;
 
+	/**
+	 * Anchor from restored state, waiting to be found in the adapter:
+	 * its stable id, where it was and how far from the top of the screen.
+	 */
+	private long mPendingAnchorId;
+	private int mPendingAnchorPosition = INVALID_POSITION;
+	private int mPendingAnchorOffset;
+
+	/** What has changed since the last layout pass - a mask of DIRTY_* flags */
+	private int mDirtyFlags = DIRTY_ALL;
+
+	/** Number of layout passes skipped because nothing had changed */
+	private int mSkippedLayoutPasses;
+
+	/** Number of layout requests swallowed while we were adding/removing children */
+	private int mBlockedLayoutRequests;
+
+	/** True while we're adding/removing children and don't want our parents to relayout */
+	private boolean mBlockLayoutRequests;
+
+	/** Marks the data as dirty when the adapter tells us it has changed */
+	private final DataSetObserver mDataSetObserver = new DataSetObserver() {
+		@Override
+		public void onChanged() {
+			mDirtyFlags |= DIRTY_DATA;
+			clearScrapHeap();
+			mPlacementSnapshots.clear();
+			clearSnapshotTiles();
+			cancelPlaceholderBinds();
+			requestLayout();
+		}
+
+		@Override
+		public void onInvalidated() {
+			mDirtyFlags |= DIRTY_DATA;
+			clearScrapHeap();
+			mPlacementSnapshots.clear();
+			clearSnapshotTiles();
+			cancelPlaceholderBinds();
+			requestLayout();
+		}
+	};
+
+	/** Estimates the full height of the wall, for the scrollbar and fast scroll */
+	private final HeightEstimator mHeightEstimator = new HeightEstimator();
+
+	/** Explicitly set source of item sizes, overrides the adapter */
+	private ItemSizeSource mItemSizeSource;
+
+	/** Draggable fast scroll thumb, null if fast scroll is disabled */
+	private FastScroller mFastScroller;
+
+	/** Exact placements at column configurations we've laid out before */
+	private final PlacementSnapshot.Cache mPlacementSnapshots =
+			new PlacementSnapshot.Cache(MAX_PLACEMENT_SNAPSHOTS);
+
+	/** Times scrolling work by phase, null unless profiling is switched on */
+	private ScrollProfiler mScrollProfiler;
+
+	/** Registered while attached on API 14+, so we hear about memory pressure */
+	private TrimMemoryCallbacks mTrimMemoryCallbacks;
+
 	public AntipodalWallLayout(Context context, AttributeSet attrs) {
 		super(context, attrs);
 
@@ -153,9 +579,16 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 				R.styleable.AntipodalWallAttrs_android_horizontalSpacing, 0);
 		this.mVerticalSpacing = a.getDimensionPixelSize(
 				R.styleable.AntipodalWallAttrs_android_verticalSpacing, 0);
+		setFastScrollEnabled(a.getBoolean(
+				R.styleable.AntipodalWallAttrs_android_fastScrollEnabled, false));
 
 		mViewsAcquiredFromAdapterDuringMeasure = new SparseArray<ColumnView>();
-		
+
+		mScroller = new Scroller(context);
+		final ViewConfiguration configuration = ViewConfiguration.get(context);
+		mMinimumFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+		mMaximumFlingVelocity = configuration.getScaledMaximumFlingVelocity();
+
 		a.recycle();
 	}
 
@@ -164,110 +597,1726 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
             if (numCols < 1)
                 numCols = 1;
             mNumberOfColumns = numCols;
+            mDirtyFlags |= DIRTY_COLUMNS;
             invalidate();
         }
     }
 
 	/**
-	 * Scrolls the list. Handles not scrolling past the top and bottom of the
-	 * list.
-	 * 
-	 * @param scrollDistance
-	 *            The distance to scroll - negative for scrolling up.
+	 * Shows or hides a draggable thumb that can be used to scrub through
+	 * the whole wall.
+	 *
+	 * @param enabled True to show the fast scroll thumb.
 	 */
-	private void scrollList(int scrollDistance) {
-		// TODO Note for if/when implementing 'fling', never scroll more than height of the view in one go, that way you won't "skip" child views?
-		// Don't want to scroll upwards past 0 position.
-		if(mScrolledPosition + scrollDistance < 0) {
-			scrollDistance = -mScrolledPosition;
-			if (scrollDistance == 0) return; // Already at top and scrolling up.
-		} else if (mScrolledPosition + scrollDistance + mParentHeight > mFinalHeight) {
-			// We should only stop scrolling if we've run out of views from the adapter.
-			if(mNextItemPosition >= mAdapter.getCount()) {
-				// If our last position is the end of the adapter, then we've seen all views from the adapter.
-				boolean stopScrolling = true;
-				for(Column c : mColumns){
-					// If we still have hidden views, we're not at the bottom of the list. Keep scrolling.
-					if(!c.getBottomHiddenViews().isEmpty()) {
-						stopScrolling = false;
-						break;
+	public void setFastScrollEnabled(boolean enabled) {
+		if(enabled && mFastScroller == null) {
+			mFastScroller = new FastScroller(this);
+		} else if(!enabled) {
+			mFastScroller = null;
+		}
+		invalidate();
+	}
+
+	public boolean isFastScrollEnabled() {
+		return mFastScroller != null;
+	}
+
+	/**
+	 * Sets where to get the sizes of items that haven't been measured yet.
+	 * If not set, the adapter is used if it implements
+	 * {@link ItemSizeSource}.
+	 *
+	 * @param source The source of item sizes, or null.
+	 */
+	public void setItemSizeSource(ItemSizeSource source) {
+		mItemSizeSource = source;
+		mHeightEstimator.setItemSizeSource(getItemSizeSource());
+	}
+
+	private ItemSizeSource getItemSizeSource() {
+		if(mItemSizeSource != null)
+			return mItemSizeSource;
+		if(mAdapter instanceof ItemSizeSource)
+			return (ItemSizeSource) mAdapter;
+		return null;
+	}
+
+	/**
+	 * @return The width of each column in pixels, e.g. for laying out the
+	 *         text of cards ahead of time. 0 until the wall is measured.
+	 */
+	public int getColumnWidth() {
+		return (int) mColumnWidth;
+	}
+
+	HeightEstimator getHeightEstimator() {
+		return mHeightEstimator;
+	}
+
+	/**
+	 * Tells the layout that one item has changed size - for example when
+	 * its image has loaded and its real aspect ratio is known. Only that
+	 * item's view is re-measured, and only the views below it in the same
+	 * column are moved; the rest of the wall is left alone.
+	 *
+	 * @param position Index into the adapter.
+	 * @param width The item's new original width (as you would measure it
+	 *            in getView(...)), or 0 to let its height grow.
+	 * @param height The item's new original height, or 0.
+	 */
+	public void notifyItemSizeChanged(int position, int width, int height) {
+		if(mAdapter == null || mColumns == null)
+			return;
+		// Placements remembered for other widths have the old height.
+		mPlacementSnapshots.clear();
+		clearSnapshotTiles();
+		if(updateItemSize(position, width, height))
+			refillAfterItemChange();
+	}
+
+	/**
+	 * Tells the layout that several items have changed size at once, e.g.
+	 * a page of rows that has just loaded. The same as calling
+	 * {@link #notifyItemSizeChanged(int, int, int)} for each, except that
+	 * the wall is only filled again once, at the end.
+	 *
+	 * @param positions Indexes into the adapter.
+	 * @param widths The items' new original widths, or 0.
+	 * @param heights The items' new original heights, or 0.
+	 * @param count The number of items to take from the arrays.
+	 */
+	void notifyItemSizesChanged(int[] positions, int[] widths, int[] heights, int count) {
+		if(mAdapter == null || mColumns == null || count <= 0)
+			return;
+		mPlacementSnapshots.clear();
+		clearSnapshotTiles();
+		boolean moved = false;
+		for(int i = 0; i < count; i++) {
+			if(updateItemSize(positions[i], widths[i], heights[i]))
+				moved = true;
+		}
+		if(moved)
+			refillAfterItemChange();
+	}
+
+	/**
+	 * Records an item's new size, re-measuring its view if it is shown and
+	 * moving the views below it.
+	 *
+	 * @return True if views moved, and the wall needs filling again.
+	 */
+	private boolean updateItemSize(int position, int width, int height) {
+		// A view bound but not shown was measured at the old size.
+		ColumnView unshown = mViewsAcquiredFromAdapterDuringMeasure.get(position);
+		if(unshown != null) {
+			mViewsAcquiredFromAdapterDuringMeasure.delete(position);
+			recycleView(unshown);
+		}
+		unshown = mScrapHeap.take(position);
+		if(unshown != null)
+			recycleView(unshown);
+		for(int i = 0; i < mColumns.length; i++) {
+			Column column = mColumns[i];
+			ColumnView cv = column.findShownView(position);
+			if(cv != null) {
+				int oldHeight = cv.view.getMeasuredHeight();
+				cv.details.width = width;
+				cv.details.height = height;
+				measureChildToFit(cv.view, width, height);
+				int newHeight = cv.view.getMeasuredHeight();
+				mHeightEstimator.setItemSize(position, width, height, newHeight);
+				int top = cv.view.getTop();
+				cv.view.layout(cv.view.getLeft(), top, cv.view.getLeft() + cv.view.getMeasuredWidth(),
+						top + newHeight);
+				column.shiftViewsBelow(cv, newHeight - oldHeight);
+				return true;
+			}
+			int where = column.updateHiddenView(position, width, height);
+			if(where != Column.NOT_FOUND) {
+				int oldHeight = mHeightEstimator.getItemHeight(position);
+				int newHeight = scaledHeight(width, height);
+				if(newHeight < 0) {
+					// We can't tell how tall it is without binding it, so
+					// forget the old height - it'll be measured when shown.
+					mHeightEstimator.setItemSize(position, width, height, -1);
+					if(where == Column.HIDDEN_ABOVE && oldHeight >= 0) {
+						// Count it at the average height until then, rather
+						// than leave the old one in the top of the column.
+						column.shiftViewsBelow(null, getEstimatedItemHeight(position) - oldHeight);
+						return true;
 					}
+					return false;
 				}
-				if(stopScrolling) return;
+				mHeightEstimator.setItemSize(position, width, height, newHeight);
+				if(where == Column.HIDDEN_ABOVE && oldHeight >= 0) {
+					column.shiftViewsBelow(null, newHeight - oldHeight);
+					return true;
+				}
+				return false;
 			}
 		}
-		mScrolledPosition += scrollDistance;
-		scrollBy(0, scrollDistance);
-		removeNonVisibleViews(mScrolledPosition);
-		if(scrollDistance > 0) {
-			fillListDown(mScrolledPosition);
-		} else if (scrollDistance < 0) {
-			fillListUp(mScrolledPosition);
+		// Not placed yet - just remember the size for when it is.
+		int newHeight = scaledHeight(width, height);
+		if(newHeight >= 0)
+			mHeightEstimator.setItemSize(position, width, height, newHeight);
+		return false;
+	}
+
+	/**
+	 * Tells the layout that items have been inserted into the adapter. Use
+	 * this rather than notifyDataSetChanged() for inserts: only items from
+	 * the insert point on are placed again, and the items on screen stay
+	 * where they are unless the insert is among them.
+	 *
+	 * @param positionStart Position of the first inserted item.
+	 * @param itemCount Number of items inserted.
+	 */
+	public void notifyItemRangeInserted(int positionStart, int itemCount) {
+		if(itemCount <= 0)
+			return;
+		notifyItemChanges(Collections.singletonList(ItemChange.insert(positionStart, itemCount)));
+	}
+
+	/**
+	 * Tells the layout that items have been removed from the adapter. Use
+	 * this rather than notifyDataSetChanged() for removals: only items from
+	 * the removal point on are placed again, and the items on screen stay
+	 * where they are unless the removal is among them.
+	 *
+	 * @param positionStart Position the first removed item was at.
+	 * @param itemCount Number of items removed.
+	 */
+	public void notifyItemRangeRemoved(int positionStart, int itemCount) {
+		if(itemCount <= 0)
+			return;
+		notifyItemChanges(Collections.singletonList(ItemChange.remove(positionStart, itemCount)));
+	}
+
+	/**
+	 * Tells the layout that an item has moved in the adapter. Items from
+	 * the earlier of the two positions on are placed again.
+	 *
+	 * @param fromPosition Where the item was.
+	 * @param toPosition Where it is now.
+	 */
+	public void notifyItemMoved(int fromPosition, int toPosition) {
+		if(fromPosition == toPosition)
+			return;
+		notifyItemChanges(Collections.singletonList(ItemChange.move(fromPosition, toPosition)));
+	}
+
+	/**
+	 * Applies changes to the adapter's items, in the order they were made,
+	 * placing items again only once - from the earliest change on. If the
+	 * changes are all above the screen, the view at the top of the screen
+	 * stays where it is.
+	 *
+	 * @param changes The changes since the layout last heard from the
+	 *            adapter.
+	 */
+	void notifyItemChanges(List<ItemChange> changes) {
+		if(changes.isEmpty())
+			return;
+		int positionStart = Integer.MAX_VALUE;
+		for(ItemChange change : changes) {
+			positionStart = Math.min(positionStart, change.getFirstAffected());
+		}
+		ColumnView anchor = findRangeChangeAnchor(positionStart);
+		int anchorIndex = anchor == null ? INVALID_POSITION : anchor.details.index;
+		// Placements are undone with the old positions, before the
+		// estimator moves on to the new ones.
+		boolean placed = forgetPlacementsFrom(positionStart);
+		for(ItemChange change : changes) {
+			anchorIndex = change.mapPosition(anchorIndex);
+			change.applyTo(mHeightEstimator);
 		}
+		replaceAfterRangeChange(placed, anchor, anchorIndex);
 	}
 
 	/**
-	 * Removes view that are outside of the visible part of the list.
-	 * 
-	 * @param offset
-	 *            Offset of the visible area
+	 * @return The view at the top of the screen if every view shown is at
+	 *         or after the change - so the change is all above the screen
+	 *         and everything shown will move unless we hold on to it -
+	 *         otherwise null.
 	 */
-	private void removeNonVisibleViews(final int offset) {
-		ColumnView poppedView;
-		for(int i = 0; i < mNumberOfColumns; i++) {
-			// Remove hidden views from top of columns
-			while(mColumns[i].peekTopView() != null 
-					&& mColumns[i].peekTopView().view.getBottom() < offset) {
-				poppedView = mColumns[i].popTopView();
-				removeViewInLayout(poppedView.view);
-                if(DEBUG) Log.d(TAG, "View child removed from top - total of " + getChildCount() + " children.");
-				mCachedItemViews.add(poppedView.view);
+	private ColumnView findRangeChangeAnchor(int positionStart) {
+		if(mAdapter == null || mColumns == null)
+			return null;
+		for(Column c : mColumns) {
+			if(!c.viewsShown.isEmpty() && c.viewsShown.getFirst().details.index < positionStart)
+				return null;
+		}
+		return findAnchorView();
+	}
+
+	/**
+	 * Forgets where every item from a position on was placed, and removes
+	 * their views. Views and caches keyed by adapter index are dropped too,
+	 * since the indexes no longer mean the same thing.
+	 *
+	 * @return False if a placement couldn't be undone exactly and the whole
+	 *         wall needs placing again.
+	 */
+	private boolean forgetPlacementsFrom(int positionStart) {
+		if(mAdapter == null || mColumns == null)
+			return true;
+		clearScrapHeap();
+		dropFlingPrefetch();
+		for(int i = 0; i < mViewsAcquiredFromAdapterDuringMeasure.size(); i++) {
+			recycleView(mViewsAcquiredFromAdapterDuringMeasure.valueAt(i));
+		}
+		mViewsAcquiredFromAdapterDuringMeasure.clear();
+		mPlacementSnapshots.clear();
+		clearSnapshotTiles();
+		if(positionStart >= mNextItemPosition)
+			return true;
+		boolean exact = true;
+		ArrayList<ColumnView> removed = new ArrayList<ColumnView>();
+		for(Column c : mColumns) {
+			if(!c.truncateFrom(positionStart, mHeightEstimator, removed))
+				exact = false;
+		}
+		for(ColumnView cv : removed) {
+			removeViewInLayout(cv.view);
+			recycleView(cv);
+		}
+		mNextItemPosition = positionStart;
+		return exact;
+	}
+
+	/**
+	 * Places items again after a range change, keeping the anchor where it
+	 * was on screen.
+	 *
+	 * @param exact
+	 *            False to give up and place the whole wall again.
+	 * @param anchor
+	 *            The view that was at the top of the screen, or null if it
+	 *            hasn't moved.
+	 * @param anchorIndex
+	 *            The anchor's adapter index since the change.
+	 */
+	private void replaceAfterRangeChange(boolean exact, ColumnView anchor, int anchorIndex) {
+		if(mAdapter == null || mColumns == null)
+			return;
+		if(!exact) {
+			resetPlacement();
+			return;
+		}
+		mBlockLayoutRequests = true;
+		try {
+			if(anchor != null && anchorIndex < mAdapter.getCount()) {
+				int anchorOffset = anchor.view.getTop() - mScrolledPosition;
+				skipItemsBefore(anchorIndex, false);
+				scrollToNextItemAt(anchorOffset);
 			}
-			// Remove hidden views from bottom of columns
-			while(mColumns[i].peekBottomView() != null 
-					&& mColumns[i].peekBottomView().view.getTop() > (offset + mParentHeight)) {
-				poppedView = mColumns[i].popBottomView();
-				removeViewInLayout(poppedView.view);
-                if(DEBUG) Log.d(TAG, "View child removed from bottom - total of " + getChildCount() + " children.");
-				mCachedItemViews.add(poppedView.view);
+			removeNonVisibleViews(mScrolledPosition);
+			fillListUp(mScrolledPosition);
+			skipHiddenViewsDown(mScrolledPosition);
+			fillListDown(mScrolledPosition);
+		} finally {
+			mBlockLayoutRequests = false;
+		}
+		// Measure again for the new height; layout has nothing left to do.
+		requestLayout();
+		invalidate();
+		awakenScrollBars();
+		scheduleScrollNotify();
+	}
+
+	/**
+	 * Throws away every placement and starts the wall again from the top.
+	 */
+	private void resetPlacement() {
+		if(mColumns != null) {
+			for(Column c : mColumns) {
+				for(ColumnView cv : c.viewsShown) {
+					removeViewInLayout(cv.view);
+					recycleView(cv);
+				}
 			}
 		}
+		mColumns = null;
+		mNextItemPosition = 0;
+		mScrolledPosition = 0;
+		mCoordinateBase = 0;
+		scrollTo(0, 0);
+		mDirtyFlags = DIRTY_ALL;
+		requestLayout();
 	}
-	
-	/***
-	 * Fills the list up and down from a given offset.
-	 * 
-	 * @param offset
-	 *            The number of pixels to the top of where the list is scrolled
-	 *            to.
+
+	/**
+	 * Starts the wall again from the top with the adapter's current items,
+	 * forgetting everything known about the old ones - e.g. after a
+	 * {@link SnapshotAdapter}'s items have all been replaced. Unlike
+	 * notifyDataSetChanged(), no view or height is kept for an index that
+	 * may now be a different item, or past the end.
+	 */
+	void resetItems() {
+		stopFling();
+		cancelPlaceholderBinds();
+		for(int i = 0; i < mViewsAcquiredFromAdapterDuringMeasure.size(); i++) {
+			recycleView(mViewsAcquiredFromAdapterDuringMeasure.valueAt(i));
+		}
+		mViewsAcquiredFromAdapterDuringMeasure.clear();
+		clearScrapHeap();
+		mPlacementSnapshots.clear();
+		clearSnapshotTiles();
+		mHeightEstimator.clear();
+		mHeightEstimator.setItemSizeSource(getItemSizeSource());
+		resetPlacement();
+	}
+
+	/**
+	 * @return The height an item of the given original size has in a
+	 *         column, or -1 if it can't be known without measuring.
+	 */
+	private int scaledHeight(int originalWidth, int originalHeight) {
+		if(originalWidth == 0 || originalHeight == 0 || mColumnWidth <= 0)
+			return -1;
+		double scaleRatio = originalWidth / mColumnWidth;
+		return (int) (originalHeight / scaleRatio);
+	}
+
+	/**
+	 * After views in a column have moved, drops any that have left the
+	 * screen and fills any gap left behind.
+	 */
+	private void refillAfterItemChange() {
+		mBlockLayoutRequests = true;
+		try {
+			removeNonVisibleViews(mScrolledPosition);
+			fillListDown(mScrolledPosition);
+		} finally {
+			mBlockLayoutRequests = false;
+		}
+		invalidate();
+	}
+
+	/**
+	 * Jumps the wall to the estimated offset of an adapter position. Used
+	 * by the fast scroll thumb.
+	 *
+	 * @param position Index into the adapter.
+	 */
+	void fastScrollToPosition(int position) {
+		if(mAdapter == null || mColumns == null)
+			return;
+		stopFling();
+		int target = mHeightEstimator.getOffsetForPosition(position);
+		scrollList((int) (target - getScrollOffset()));
+		invalidate();
+	}
+
+	/**
+	 * Sets whether the wall scrolls by moving its children with
+	 * offsetTopAndBottom(...), keeping its own scroll position at 0, rather
+	 * than by scrolling itself. Either way the wall's coordinates are
+	 * rebased around the screen now and then, so they stay small on very
+	 * long walls.
+	 *
+	 * @param enabled
+	 *            True to scroll by moving the children.
+	 */
+	public void setChildOffsetScrolling(boolean enabled) {
+		mChildOffsetScrolling = enabled;
+		if(enabled && mColumns != null)
+			rebaseCoordinates(mScrolledPosition);
+	}
+
+	public boolean isChildOffsetScrolling() {
+		return mChildOffsetScrolling;
+	}
+
+	/**
+	 * @return How far the wall is scrolled from its top, whatever its
+	 *         coordinates are based on.
+	 */
+	private long getScrollOffset() {
+		return mCoordinateBase + mScrolledPosition;
+	}
+
+	/**
+	 * @return The top of the wall in the columns' current coordinates.
+	 */
+	private int getWallTop() {
+		return (int) -mCoordinateBase;
+	}
+
+	/**
+	 * Moves the origin of the wall's coordinates down by some distance:
+	 * the columns, the children, the scroll position and the snapshots are
+	 * all moved up by it, so nothing moves on screen.
+	 *
+	 * @param delta
+	 *            Distance to move the origin - negative to move it up.
+	 */
+	private void rebaseCoordinates(int delta) {
+		if(delta == 0 || mColumns == null)
+			return;
+		for(Column c : mColumns) {
+			c.shiftViewsBelow(null, -delta);
+		}
+		mScrolledPosition -= delta;
+		mFinalHeight -= delta;
+		mCoordinateBase += delta;
+		mSnapshotScrollY -= delta;
+		if(mSnapshotTiles != null)
+			mSnapshotTiles.offset(-delta);
+		if(getScrollY() != mScrolledPosition)
+			scrollTo(0, mScrolledPosition);
+		if(DEBUG) Log.d(TAG, "Rebased coordinates by " + delta + ", base now " + mCoordinateBase);
+	}
+
+	/**
+	 * Scrolls the list. Handles not scrolling past the top and bottom of the
+	 * list.
+	 * 
+	 * @param scrollDistance
+	 *            The distance to scroll - negative for scrolling up.
+	 * @return False if the list couldn't scroll at all because it's at the
+	 *         top or bottom.
+	 */
+	private boolean scrollList(int scrollDistance) {
+		// Don't want to scroll upwards past 0 position.
+		long scrollOffset = getScrollOffset();
+		if(scrollOffset + scrollDistance < 0) {
+			scrollDistance = (int) -scrollOffset;
+			if (scrollDistance == 0) return false; // Already at top and scrolling up.
+		} else if (mScrolledPosition + scrollDistance + mParentHeight > mFinalHeight) {
+			// We should only stop scrolling if we've run out of views from the adapter.
+			if(mNextItemPosition >= mAdapter.getCount()) {
+				// If our last position is the end of the adapter, then we've seen all views from the adapter.
+				boolean stopScrolling = true;
+				for(Column c : mColumns){
+					// If we still have hidden views, we're not at the bottom of the list. Keep scrolling.
+					if(!c.getBottomHiddenViews().isEmpty()) {
+						stopScrolling = false;
+						break;
+					}
+				}
+				if(stopScrolling) return false;
+			}
+		}
+		final long profileStart = profileStart();
+		updateExtraLayoutSpace(scrollDistance);
+		mScrolledPosition += scrollDistance;
+		if(mChildOffsetScrolling) {
+			// Rebasing on the new position moves the children instead.
+			rebaseCoordinates(mScrolledPosition);
+		} else {
+			scrollBy(0, scrollDistance);
+			if(Math.abs(mScrolledPosition) > REBASE_THRESHOLD)
+				rebaseCoordinates(mScrolledPosition);
+		}
+		// Adding and removing children as we go shouldn't make anyone
+		// further up the hierarchy lay out again.
+		mBlockLayoutRequests = true;
+		try {
+			removeNonVisibleViews(mScrolledPosition);
+			if(scrollDistance > 0) {
+				skipHiddenViewsDown(mScrolledPosition);
+				fillListDown(mScrolledPosition);
+			} else if (scrollDistance < 0) {
+				skipHiddenViewsUp(mScrolledPosition);
+				fillListUp(mScrolledPosition);
+			}
+		} finally {
+			mBlockLayoutRequests = false;
+		}
+		profileEnd(ScrollProfiler.PHASE_SCROLL, profileStart);
+		awakenScrollBars();
+		scheduleScrollNotify();
+		return true;
+	}
+
+	/**
+	 * After a jump of more than a screen downwards, moves views that would
+	 * end up entirely above the visible area straight past the bottom of
+	 * their columns, so they never get bound or laid out. Follows the same
+	 * placement order as {@link #fillListDown(int)}.
+	 *
+	 * @param offset
+	 *            Offset of the visible area
+	 */
+	private void skipHiddenViewsDown(final int offset) {
+		int shortestColumnIndex = findShortestColumnIndex(mColumns);
+		Column column = mColumns[shortestColumnIndex];
+		int adapterIndex;
+		while(column.viewsShown.isEmpty()) {
+			boolean isNewItem = column.getBottomHiddenViews().isEmpty();
+			if(isNewItem) {
+				if(mNextItemPosition >= mAdapter.getCount()) break;
+				adapterIndex = mNextItemPosition;
+			} else {
+				adapterIndex = column.getBottomHiddenViews().getFirst().index;
+			}
+			int height = getHeightForSkip(adapterIndex);
+			if(column.getBottom() + mPaddingT + height >= offset - mExtraSpaceAbove) break;
+
+			skipItem(column, adapterIndex, isNewItem, height);
+			shortestColumnIndex = findShortestColumnIndex(mColumns);
+			column = mColumns[shortestColumnIndex];
+		}
+	}
+
+	/**
+	 * Places items without binding them, as {@link #skipHiddenViewsDown(int)}
+	 * does, until the given item is the next to be placed. Only valid while
+	 * no column has any views shown.
+	 *
+	 * @param adapterIndex
+	 *            Index of the item to stop before.
+	 * @param estimateUnknown
+	 *            True to place items we don't know the height of at the
+	 *            average height rather than measuring them. The columns
+	 *            are straightened out when scrolled back to the top.
+	 */
+	private void skipItemsBefore(final int adapterIndex, boolean estimateUnknown) {
+		while(mNextItemPosition < adapterIndex) {
+			Column column = mColumns[findShortestColumnIndex(mColumns)];
+			boolean isNewItem = column.getBottomHiddenViews().isEmpty();
+			int index = isNewItem ? mNextItemPosition : column.getBottomHiddenViews().getFirst().index;
+			int height = mHeightEstimator.getItemHeight(index);
+			if(height < 0)
+				height = estimateUnknown ? getEstimatedItemHeight(index) : getHeightForSkip(index);
+			skipItem(column, index, isNewItem, height);
+		}
+	}
+
+	/**
+	 * Scrolls so that the next item to be placed will be the given distance
+	 * from the top of the screen.
+	 */
+	private void scrollToNextItemAt(int anchorOffset) {
+		int anchorTop = mColumns[findShortestColumnIndex(mColumns)].getBottom() + mPaddingT;
+		int scrolledPosition = Math.max(getWallTop(), anchorTop - anchorOffset);
+		scrollBy(0, scrolledPosition - mScrolledPosition);
+		mScrolledPosition = scrolledPosition;
+	}
+
+	/**
+	 * Finds the anchor saved by {@link #onSaveInstanceState()} in the
+	 * adapter's current data and places the wall around it: items before it
+	 * are placed without binding them, and only the screen around it is
+	 * filled. If the anchor's gone, the wall starts from the top.
+	 */
+	private void restorePendingAnchor() {
+		int count = mAdapter.getCount();
+		int position = INVALID_POSITION;
+		// Nearest the saved position first - usually it hasn't moved far.
+		int saved = Math.min(Math.max(mPendingAnchorPosition, 0), count - 1);
+		for(int distance = 0; position == INVALID_POSITION
+				&& (saved - distance >= 0 || saved + distance < count); distance++) {
+			if(saved + distance < count && mAdapter.getItemId(saved + distance) == mPendingAnchorId) {
+				position = saved + distance;
+			} else if(distance > 0 && saved - distance >= 0
+					&& mAdapter.getItemId(saved - distance) == mPendingAnchorId) {
+				position = saved - distance;
+			}
+		}
+		if(DEBUG) Log.d(TAG, "Restoring anchor " + mPendingAnchorId + " saved at " + mPendingAnchorPosition + ", found at " + position);
+		if(position != INVALID_POSITION) {
+			skipItemsBefore(position, true);
+			scrollToNextItemAt(mPendingAnchorOffset);
+		}
+		mPendingAnchorPosition = INVALID_POSITION;
+	}
+
+	/**
+	 * @return The height of an item in a column, measuring it if we don't
+	 *         know - in which case the view is kept around in case it turns
+	 *         out to be visible.
+	 */
+	private int getHeightForSkip(int adapterIndex) {
+		int height = mHeightEstimator.getItemHeight(adapterIndex);
+		if(height < 0) {
+			ColumnView measured = getViewForIndex(adapterIndex);
+			mViewsAcquiredFromAdapterDuringMeasure.put(adapterIndex, measured);
+			height = measured.view.getMeasuredHeight();
+		}
+		return height;
+	}
+
+	/**
+	 * @return The height of an item in a column if we know it, otherwise
+	 *         the average.
+	 */
+	private int getEstimatedItemHeight(int adapterIndex) {
+		int height = mHeightEstimator.getItemHeight(adapterIndex);
+		if(height >= 0)
+			return height;
+		return Math.max(0, Math.round(mHeightEstimator.getAverageItemHeight()) - mVerticalSpacing);
+	}
+
+	/**
+	 * Moves an item past the bottom of a column without showing it.
+	 */
+	private void skipItem(Column column, int adapterIndex, boolean isNewItem, int height) {
+		AdapterViewDetails details;
+		ColumnView acquired = mViewsAcquiredFromAdapterDuringMeasure.get(adapterIndex);
+		if(acquired != null) {
+			mViewsAcquiredFromAdapterDuringMeasure.delete(adapterIndex);
+			recycleView(acquired);
+			details = acquired.details;
+		} else if(!isNewItem) {
+			details = column.getBottomHiddenViews().getFirst();
+		} else {
+			details = new AdapterViewDetails(mHeightEstimator.getOriginalWidth(adapterIndex),
+					mHeightEstimator.getOriginalHeight(adapterIndex), adapterIndex);
+		}
+		if(isNewItem) mNextItemPosition++;
+		column.skipBottom(details, height);
+	}
+
+	/**
+	 * After a jump of more than a screen upwards, moves views that would
+	 * end up entirely below the visible area straight back to the bottom
+	 * hidden views of their columns, so they never get bound or laid out.
+	 *
+	 * @param offset
+	 *            Offset of the visible area
+	 */
+	private void skipHiddenViewsUp(final int offset) {
+		for(Column column : mColumns) {
+			while(column.viewsShown.isEmpty() && !column.getTopHiddenViews().isEmpty()) {
+				int height = mHeightEstimator.getItemHeight(column.getTopHiddenViews().getLast().index);
+				if(height < 0) break;
+				int topOfView = column.getTop() - height - mVerticalSpacing + mPaddingT;
+				if(topOfView <= offset + mParentHeight + mExtraSpaceBelow) break;
+				column.skipTop(height);
+			}
+		}
+	}
+
+	/**
+	 * Starts timing a phase of work, if a profiler is attached.
+	 *
+	 * @return The current time in nanoseconds, or 0 if not profiling.
+	 */
+	private long profileStart() {
+		return mScrollProfiler == null ? 0 : System.nanoTime();
+	}
+
+	/**
+	 * Records the time since profileStart() against a phase, if a profiler
+	 * is attached.
+	 *
+	 * @return The current time, for timing the next phase.
+	 */
+	private long profileEnd(int phase, long start) {
+		if(mScrollProfiler == null)
+			return 0;
+		long now = System.nanoTime();
+		mScrollProfiler.record(phase, now - start);
+		return now;
+	}
+
+	/**
+	 * Attaches a profiler to time scrolling work by phase. Pass null to
+	 * stop profiling.
+	 *
+	 * @param profiler The profiler to record into, or null.
+	 */
+	public void setScrollProfiler(ScrollProfiler profiler) {
+		mScrollProfiler = profiler;
+	}
+
+	public ScrollProfiler getScrollProfiler() {
+		return mScrollProfiler;
+	}
+
+	/**
+	 * Makes sure the scroll gathered from touch events gets applied at the
+	 * start of the next frame.
+	 */
+	private void scheduleScrollFrame() {
+		if (!mScrollFramePending) {
+			mScrollFramePending = true;
+			postOnNextFrame(mScrollFrameRunnable);
+		}
+	}
+
+	/**
+	 * Runs the runnable at the start of the next display frame, or as soon
+	 * as possible on platforms without Choreographer.
+	 */
+	void postOnNextFrame(Runnable runnable) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+			postOnAnimation(runnable);
+		} else {
+			post(runnable);
+		}
+	}
+
+	/**
+	 * Arranges for the scroll listener (and image scheduler, and a windowed
+	 * adapter) to be told what's on screen on the next frame, unless that's
+	 * already arranged.
+	 */
+	private void scheduleScrollNotify() {
+		if ((mOnScrollListener != null || mImageRequestScheduler != null
+				|| mAdapter instanceof WindowedAdapter) && !mScrollNotifyPending) {
+			mScrollNotifyPending = true;
+			postOnNextFrame(mNotifyScrollRunnable);
+		}
+	}
+
+	/**
+	 * Tells the scroll listener about a scroll straight away, rather than on
+	 * the next frame. Used by passes that already run once per frame.
+	 */
+	private void flushScrollNotify() {
+		if (mScrollNotifyPending) {
+			removeCallbacks(mNotifyScrollRunnable);
+			mNotifyScrollRunnable.run();
+		}
+	}
+
+	/**
+	 * Sets the listener that will be told about scroll state changes and
+	 * scrolling.
+	 *
+	 * @param listener The listener, or null.
+	 */
+	public void setOnScrollListener(OnScrollListener listener) {
+		mOnScrollListener = listener;
+	}
+
+	/**
+	 * @return One of the OnScrollListener.SCROLL_STATE_* constants.
+	 */
+	public int getScrollState() {
+		return mScrollState;
+	}
+
+	/**
+	 * Sets a scheduler for image loads to keep informed of what's on screen,
+	 * so it can load those first and put off the rest, and of views being
+	 * recycled, so it can cancel their loads. Its loads run on the wall's
+	 * background executor.
+	 *
+	 * @param scheduler The scheduler, or null.
+	 */
+	public void setImageRequestScheduler(ImageRequestScheduler scheduler) {
+		if(mImageRequestScheduler != null && mImageRequestScheduler != scheduler)
+			mImageRequestScheduler.setWall(null);
+		mImageRequestScheduler = scheduler;
+		if(scheduler != null)
+			scheduler.setWall(this);
+		scheduleScrollNotify();
+	}
+
+	public ImageRequestScheduler getImageRequestScheduler() {
+		return mImageRequestScheduler;
+	}
+
+	private void setScrollState(int scrollState) {
+		if (scrollState == mScrollState)
+			return;
+		mScrollState = scrollState;
+		if (scrollState == OnScrollListener.SCROLL_STATE_IDLE) {
+			mScrollVelocity = 0;
+			// Including after a fling caught by a drag.
+			dropFlingPrefetch();
+			resetExtraLayoutSpace();
+			if (mSnapshotTiles != null)
+				captureSnapshot();
+		}
+		if (mOnScrollListener != null)
+			mOnScrollListener.onScrollStateChanged(this, scrollState);
+	}
+
+	/**
+	 * Enables drawing snapshots of recently seen parts of the wall, or
+	 * placeholders where there are none, instead of binding real views
+	 * while a fling is moving too fast for them to be seen properly. Views
+	 * are bound again once the fling slows down.
+	 *
+	 * @param enabled
+	 *            True to draw snapshots during fast flings.
+	 */
+	public void setFlingSnapshotsEnabled(boolean enabled) {
+		if (enabled && mSnapshotTiles == null) {
+			DisplayMetrics metrics = getResources().getDisplayMetrics();
+			mSnapshotTiles = new SnapshotTiles(
+					DEFAULT_SNAPSHOT_SCREENS * metrics.widthPixels * metrics.heightPixels * 4);
+			mSnapshotPlaceholderPaint = new Paint();
+			mSnapshotPlaceholderPaint.setColor(SNAPSHOT_PLACEHOLDER_COLOR);
+			if (mSnapshotVelocity == 0)
+				mSnapshotVelocity = mMaximumFlingVelocity / 2;
+		} else if (!enabled && mSnapshotTiles != null) {
+			stopFling();
+			mSnapshotTiles.release();
+			mSnapshotTiles = null;
+			mSnapshotCapturePending = false;
+		}
+	}
+
+	public boolean isFlingSnapshotsEnabled() {
+		return mSnapshotTiles != null;
+	}
+
+	/**
+	 * @param pixelsPerSecond
+	 *            Fling velocity above which snapshots are drawn instead of
+	 *            views. Defaults to half the maximum fling velocity.
+	 */
+	public void setFlingSnapshotVelocity(int pixelsPerSecond) {
+		mSnapshotVelocity = pixelsPerSecond;
+	}
+
+	/**
+	 * @param bytes
+	 *            Most memory the snapshots may use. Each one is a screenful
+	 *            at 4 bytes a pixel. Defaults to two screenfuls.
+	 */
+	public void setFlingSnapshotMemoryBudget(int bytes) {
+		setFlingSnapshotsEnabled(true);
+		mSnapshotTiles.setBudget(bytes);
+	}
+
+	/**
+	 * @return The current speed of the fling in pixels per second, or 0 on
+	 *         platforms where Scroller can't tell us (before ICS) - fling
+	 *         snapshots aren't used there.
+	 */
+	private float getFlingVelocity() {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+			return mScroller.getCurrVelocity();
+		return 0;
+	}
+
+	/**
+	 * Starts drawing snapshots instead of views, taking a snapshot of what's
+	 * on screen first.
+	 */
+	private void enterSnapshotMode() {
+		captureSnapshot();
+		mSnapshotMode = true;
+		mSnapshotScrollY = mScrolledPosition;
+	}
+
+	/**
+	 * Goes back to drawing views, catching the real scroll position up with
+	 * where the snapshots got to in a single jump.
+	 */
+	private void exitSnapshotMode() {
+		mSnapshotMode = false;
+		int distance = mSnapshotScrollY - mScrolledPosition;
+		if (distance != 0)
+			scrollList(distance);
+		invalidate();
+	}
+
+	/**
+	 * Arranges for what's on screen to be drawn into a snapshot tile on the
+	 * next draw, unless there's a tile taken here already.
+	 */
+	private void captureSnapshot() {
+		if (mSnapshotTiles.contains(mScrolledPosition))
+			return;
+		mSnapshotCapturePending = true;
+		invalidate();
+	}
+
+	/**
+	 * Draws what's on screen into a snapshot tile, if it fits the budget.
+	 * Called from dispatchDraw(...), so the views are drawn during a draw
+	 * pass like any other.
+	 */
+	private void drawSnapshotTile() {
+		mSnapshotCapturePending = false;
+		if (getChildCount() == 0 || mSnapshotTiles.contains(mScrolledPosition)
+				|| !mSnapshotTiles.fits(getWidth(), mParentHeight))
+			return;
+		Bitmap bitmap = mSnapshotTiles.obtainBitmap(getWidth(), mParentHeight);
+		if (bitmap == null) {
+			try {
+				bitmap = Bitmap.createBitmap(getWidth(), mParentHeight, Bitmap.Config.ARGB_8888);
+			} catch (OutOfMemoryError e) {
+				if(DEBUG) Log.d(TAG, "No memory for a snapshot tile");
+				return;
+			}
+		}
+		Canvas canvas = new Canvas(bitmap);
+		canvas.translate(0, -mScrolledPosition);
+		super.dispatchDraw(canvas);
+		mSnapshotTiles.put(mScrolledPosition, bitmap);
+	}
+
+	private void clearSnapshotTiles() {
+		if (mSnapshotTiles != null)
+			mSnapshotTiles.clear();
+	}
+
+	/**
+	 * Draws placeholders for each column, then any snapshots over the top,
+	 * for where the wall would be scrolled to in snapshot mode.
+	 */
+	private void drawSnapshots(Canvas canvas) {
+		int shift = mScrolledPosition - mSnapshotScrollY;
+		int top = mSnapshotScrollY;
+		int bottom = top + mParentHeight;
+		float slot = mHeightEstimator.getAverageItemHeight();
+		if (slot >= 1) {
+			for (int i = 0; i < mNumberOfColumns; i++) {
+				int left = this.mPaddingL + (int) (this.mColumnWidth * i)
+						+ (this.mHorizontalSpacing * i);
+				// Stagger the columns a little, as real items would be.
+				float stagger = slot * i / mNumberOfColumns;
+				float y = (float) Math.floor((top - mPaddingT - stagger) / slot) * slot
+						+ mPaddingT + stagger;
+				for (; y < bottom; y += slot) {
+					canvas.drawRect(left, y + shift, left + mColumnWidth,
+							y + slot - mVerticalSpacing + shift, mSnapshotPlaceholderPaint);
+				}
+			}
+		}
+		mSnapshotTiles.draw(canvas, top, bottom, shift);
+	}
+
+	/**
+	 * @return The adapter position of the first item on screen in any
+	 *         column, or INVALID_POSITION if there are none.
+	 */
+	@Override
+	public int getFirstVisiblePosition() {
+		if (mColumns == null)
+			return INVALID_POSITION;
+		int first = INVALID_POSITION;
+		for (Column c : mColumns) {
+			if (c.viewsShown.isEmpty())
+				continue;
+			int position = Math.max(c.viewsShown.indexOfViewAt(mScrolledPosition), 0);
+			// Views kept attached above the screen can end in the spacing
+			// just above it - the next one down is the first on screen.
+			if (c.viewsShown.get(position).view.getBottom() <= mScrolledPosition)
+				position++;
+			if (position >= c.viewsShown.size())
+				continue;
+			int index = c.viewsShown.get(position).details.index;
+			if (first == INVALID_POSITION || index < first)
+				first = index;
+		}
+		return first;
+	}
+
+	/**
+	 * @return The adapter position of the last item on screen in any
+	 *         column, or INVALID_POSITION if there are none.
+	 */
+	@Override
+	public int getLastVisiblePosition() {
+		if (mColumns == null)
+			return INVALID_POSITION;
+		int last = INVALID_POSITION;
+		for (Column c : mColumns) {
+			int position = c.viewsShown.indexOfViewAt(mScrolledPosition + mParentHeight - 1);
+			if (position < 0)
+				continue;
+			int index = c.viewsShown.get(position).details.index;
+			if (index > last)
+				last = index;
+		}
+		return last;
+	}
+
+	/**
+	 * Flings the wall as if the user had, e.g. for scripted scrolling.
+	 *
+	 * @param velocityY
+	 *            Initial velocity in pixels per second - positive to scroll
+	 *            down the wall. Clamped to the maximum fling velocity.
+	 */
+	public void fling(int velocityY) {
+		if (mAdapter == null || mColumns == null)
+			return;
+		velocityY = Math.max(-mMaximumFlingVelocity, Math.min(mMaximumFlingVelocity, velocityY));
+		if (Math.abs(velocityY) < mMinimumFlingVelocity)
+			return;
+		startFling(velocityY);
+	}
+
+	/**
+	 * Scrolls the wall straight away, stopping any fling.
+	 *
+	 * @param y
+	 *            Distance to scroll in pixels - positive to scroll down the
+	 *            wall.
+	 */
+	public void scrollListBy(int y) {
+		if (mAdapter == null || mColumns == null)
+			return;
+		stopFling();
+		applyPendingScroll();
+		if (scrollList(y))
+			invalidate();
+	}
+
+	/**
+	 * Starts the wall moving by itself.
+	 *
+	 * @param velocityY
+	 *            Initial velocity in pixels per second - positive to scroll
+	 *            down the wall.
+	 */
+	private void startFling(int velocityY) {
+		applyPendingScroll();
+		mScroller.fling(0, (int) getScrollOffset(), 0, velocityY, 0, 0, 0, Integer.MAX_VALUE);
+		dropFlingPrefetch();
+		predictFlingDestination();
+		setScrollState(OnScrollListener.SCROLL_STATE_SETTLING);
+		removeCallbacks(mFlingRunnable);
+		postOnNextFrame(mFlingRunnable);
+	}
+
+	/**
+	 * Stops a fling, if there is one.
+	 */
+	private void stopFling() {
+		haltFling();
+		// The wall has filled where it stopped, so anything still held
+		// was predicted wrongly.
+		dropFlingPrefetch();
+		if (mScrollState == OnScrollListener.SCROLL_STATE_SETTLING)
+			setScrollState(OnScrollListener.SCROLL_STATE_IDLE);
+	}
+
+	/**
+	 * Stops the fling from moving the wall any further, leaving the scroll
+	 * state and the fling's prefetched views alone.
+	 */
+	private void haltFling() {
+		removeCallbacks(mFlingRunnable);
+		mScroller.forceFinished(true);
+		if (mSnapshotMode)
+			exitSnapshotMode();
+	}
+
+	/**
+	 * Enables binding the items a fling is expected to stop on while it's
+	 * still moving, a few each frame, so the wall is full on the frame it
+	 * settles. Their images are loaded ahead of time too, if an
+	 * {@link ImageRequestScheduler} is attached. On by default.
+	 *
+	 * @param enabled
+	 *            True to bind ahead of flings.
+	 */
+	public void setFlingPrefetchEnabled(boolean enabled) {
+		mFlingPrefetchEnabled = enabled;
+		if(!enabled)
+			dropFlingPrefetch();
+	}
+
+	public boolean isFlingPrefetchEnabled() {
+		return mFlingPrefetchEnabled;
+	}
+
+	/**
+	 * Works out which items will be on screen where the fling that's just
+	 * started comes to rest, placing items the way filling would with the
+	 * heights we know or estimate, and queues them to be bound during the
+	 * fling.
+	 */
+	private void predictFlingDestination() {
+		if(!mFlingPrefetchEnabled || mAdapter == null || mColumns == null)
+			return;
+		long restOffset = mScroller.getFinalY() - mCoordinateBase;
+		int restTop = (int) Math.max(getWallTop(), Math.min(restOffset, Integer.MAX_VALUE / 2));
+		if(restTop > mScrolledPosition) {
+			predictItemsBelow(restTop, restTop + mParentHeight);
+		} else if(restTop < mScrolledPosition) {
+			predictItemsAbove(restTop, restTop + mParentHeight);
+		}
+		if(DEBUG) Log.d(TAG, "Fling to " + restTop + " should stop on " + mFlingPrefetchCount + " items not shown yet");
+		if(mImageRequestScheduler != null && mFlingPrefetchCount > 0) {
+			int first = Integer.MAX_VALUE;
+			int last = INVALID_POSITION;
+			for(int i = 0; i < mFlingPrefetchCount; i++) {
+				first = Math.min(first, mFlingPrefetchPositions[i]);
+				last = Math.max(last, mFlingPrefetchPositions[i]);
+			}
+			mImageRequestScheduler.setPredictedRange(first, last);
+		}
+	}
+
+	/**
+	 * Follows {@link #fillListDown(int)} down from the bottoms of the
+	 * columns without placing anything, noting the items that would cover
+	 * the given span.
+	 */
+	private void predictItemsBelow(int restTop, int restBottom) {
+		int[] bottoms = new int[mColumns.length];
+		ArrayList<Iterator<AdapterViewDetails>> hidden = new ArrayList<Iterator<AdapterViewDetails>>(mColumns.length);
+		int[] hiddenLeft = new int[mColumns.length];
+		for(int i = 0; i < mColumns.length; i++) {
+			bottoms[i] = mColumns[i].getBottom() + mPaddingT;
+			hidden.add(mColumns[i].getBottomHiddenViews().iterator());
+			hiddenLeft[i] = mColumns[i].getBottomHiddenCount();
+		}
+		int nextPosition = mNextItemPosition;
+		int count = mAdapter.getCount();
+		for(int step = 0; step < MAX_FLING_PREDICTION_STEPS && mFlingPrefetchCount < MAX_FLING_PREFETCH; step++) {
+			int column = findShortestColumnIndex(bottoms);
+			if(bottoms[column] > restBottom)
+				break;
+			int index;
+			if(hidden.get(column).hasNext()) {
+				index = hidden.get(column).next().index;
+				hiddenLeft[column]--;
+			} else if(hiddenLeft[column] > 0 || nextPosition >= count) {
+				// Compacted, so we can't see what's next - or there's
+				// nothing next. Either way this column is done.
+				bottoms[column] = Integer.MAX_VALUE;
+				continue;
+			} else {
+				index = nextPosition++;
+			}
+			int top = bottoms[column];
+			int height = getEstimatedItemHeight(index);
+			bottoms[column] += height + mVerticalSpacing;
+			if(top + height > restTop)
+				mFlingPrefetchPositions[mFlingPrefetchCount++] = index;
+		}
+	}
+
+	/**
+	 * Walks up from the tops of the columns through the items hidden above
+	 * them, noting the items that would cover the given span.
+	 */
+	private void predictItemsAbove(int restTop, int restBottom) {
+		for(int i = 0; i < mColumns.length; i++) {
+			LinkedList<AdapterViewDetails> above = mColumns[i].getTopHiddenViews();
+			ListIterator<AdapterViewDetails> it = above.listIterator(above.size());
+			int top = mColumns[i].getTop() + mPaddingT;
+			for(int step = 0; step < MAX_FLING_PREDICTION_STEPS && it.hasPrevious()
+					&& mFlingPrefetchCount < MAX_FLING_PREFETCH; step++) {
+				int index = it.previous().index;
+				int height = getEstimatedItemHeight(index);
+				top -= height + mVerticalSpacing;
+				if(top + height <= restTop)
+					break;
+				if(top < restBottom)
+					mFlingPrefetchPositions[mFlingPrefetchCount++] = index;
+			}
+		}
+	}
+
+	/**
+	 * Binds items the fling is expected to stop on with whatever is left of
+	 * this frame's fill budget - or one a frame if there's no budget - and
+	 * holds on to them for when the wall gets there.
+	 */
+	private void prefetchFlingDestination() {
+		if(mFlingPrefetchNext >= mFlingPrefetchCount || mAdapter == null || mColumns == null)
+			return;
+		final boolean budgetStarted = startFillBudget();
+		try {
+			int bound = 0;
+			while(mFlingPrefetchNext < mFlingPrefetchCount) {
+				if(mFillBudgetMs > 0 ? isFillBudgetSpent() : bound > 0)
+					break;
+				int index = mFlingPrefetchPositions[mFlingPrefetchNext++];
+				if(index >= mAdapter.getCount() || isItemBound(index))
+					continue;
+				mViewsAcquiredFromAdapterDuringMeasure.put(index, getViewForIndex(index));
+				bound++;
+			}
+		} finally {
+			endFillBudget(budgetStarted);
+		}
+	}
+
+	/** @return True if an item has a bound view, shown or not */
+	private boolean isItemBound(int index) {
+		if(mViewsAcquiredFromAdapterDuringMeasure.get(index) != null || mScrapHeap.contains(index))
+			return true;
+		for(Column c : mColumns) {
+			ColumnView cv = c.findShownView(index);
+			if(cv != null && !cv.placeholder)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Recycles views bound for a fling that the wall didn't use, and
+	 * forgets the prediction.
+	 */
+	private void dropFlingPrefetch() {
+		for(int i = 0; i < mFlingPrefetchNext; i++) {
+			int index = mFlingPrefetchPositions[i];
+			ColumnView cv = mViewsAcquiredFromAdapterDuringMeasure.get(index);
+			if(cv != null) {
+				mViewsAcquiredFromAdapterDuringMeasure.delete(index);
+				recycleView(cv);
+			}
+		}
+		mFlingPrefetchCount = 0;
+		mFlingPrefetchNext = 0;
+		if(mImageRequestScheduler != null)
+			mImageRequestScheduler.setPredictedRange(INVALID_POSITION, INVALID_POSITION);
+	}
+
+	/**
+	 * @return The number of touch samples, including historical ones,
+	 *         gathered into scroll passes so far.
+	 */
+	public int getCoalescedScrollSampleCount() {
+		return mCoalescedScrollSamples;
+	}
+
+	/**
+	 * @return The number of scroll passes run for touch input so far - at
+	 *         most one per frame.
+	 */
+	public int getScrollFrameCount() {
+		return mScrollFrames;
+	}
+
+	/**
+	 * Sets how much of the wall is kept laid out past the top and bottom of
+	 * the screen, so that views scrolled just off screen stay attached and
+	 * small scrolls back don't have to bind them again. While scrolling,
+	 * more of this space is moved ahead of the motion the faster the wall
+	 * moves.
+	 *
+	 * @param pixels
+	 *            Extra space either side of the screen when still, 0 for
+	 *            none or -1 for a quarter of the screen (the default).
+	 */
+	public void setExtraLayoutSpace(int pixels) {
+		mExtraLayoutSpace = pixels;
+		resetExtraLayoutSpace();
+	}
+
+	/**
+	 * @return The extra space either side of the screen when still, or -1
+	 *         for a quarter of the screen.
+	 */
+	public int getExtraLayoutSpace() {
+		return mExtraLayoutSpace;
+	}
+
+	/**
+	 * @param count
+	 *            Most children to keep attached at once. Views in the extra
+	 *            layout space are dropped, and no more laid out there, to
+	 *            stay within it. Views on screen always stay.
+	 */
+	public void setMaxAttachedChildren(int count) {
+		mMaxAttachedChildren = count;
+	}
+
+	/**
+	 * Sets how long filling the screen may spend binding views in one
+	 * frame. Once it's spent, the rest of the items are laid out as
+	 * placeholders at their known or estimated heights, and bound over the
+	 * next frames, those on screen first.
+	 *
+	 * @param millis
+	 *            The budget in milliseconds, or 0 to always bind straight
+	 *            away.
+	 */
+	public void setFillTimeBudget(int millis) {
+		mFillBudgetMs = Math.max(0, millis);
+	}
+
+	public int getFillTimeBudget() {
+		return mFillBudgetMs;
+	}
+
+	/**
+	 * @param color
+	 *            Colour of the placeholders shown for items that haven't
+	 *            been bound yet.
+	 */
+	public void setPlaceholderColor(int color) {
+		mPlaceholderColor = color;
+		mPlaceholderViews.clear();
+	}
+
+	/** @return The extra space either side of the screen when still */
+	private int getBaseExtraLayoutSpace() {
+		return mExtraLayoutSpace >= 0 ? mExtraLayoutSpace : mParentHeight / 4;
+	}
+
+	private void resetExtraLayoutSpace() {
+		mExtraSpaceAbove = mExtraSpaceBelow = getBaseExtraLayoutSpace();
+	}
+
+	/**
+	 * Works out how fast the wall is scrolling from how far it moved since
+	 * the last step, and shifts the extra layout space to suit: up to twice
+	 * as much again ahead of the motion, and as little as a quarter of it
+	 * behind.
+	 *
+	 * @param scrollDistance
+	 *            The distance about to be scrolled - negative for up.
+	 */
+	private void updateExtraLayoutSpace(int scrollDistance) {
+		long now = SystemClock.uptimeMillis();
+		long elapsed = now - mLastScrollTime;
+		mLastScrollTime = now;
+		if(elapsed <= 0) {
+			// Several steps in one frame - count them as one.
+			elapsed = 1;
+		}
+		if(elapsed > SCROLL_VELOCITY_TIMEOUT_MS) {
+			mScrollVelocity = 0;
+		} else {
+			mScrollVelocity = (mScrollVelocity + scrollDistance * 1000f / elapsed) / 2;
+		}
+		int base = getBaseExtraLayoutSpace();
+		float fullShiftVelocity = (float) mParentHeight * EXTRA_SPACE_FULL_SHIFT_SCREENS_PER_SECOND;
+		float shift = fullShiftVelocity > 0
+				? Math.min(1f, Math.abs(mScrollVelocity) / fullShiftVelocity) : 0;
+		int ahead = base + (int) (2 * base * shift);
+		int behind = base - (int) (base * 3 / 4 * shift);
+		if(mScrollVelocity >= 0) {
+			mExtraSpaceBelow = ahead;
+			mExtraSpaceAbove = behind;
+		} else {
+			mExtraSpaceAbove = ahead;
+			mExtraSpaceBelow = behind;
+		}
+	}
+
+	/** @return Extra space to fill above the screen, 0 if out of children */
+	private int getExtraSpaceAboveForFill() {
+		return getChildCount() < mMaxAttachedChildren ? mExtraSpaceAbove : 0;
+	}
+
+	/** @return Extra space to fill below the screen, 0 if out of children */
+	private int getExtraSpaceBelowForFill() {
+		return getChildCount() < mMaxAttachedChildren ? mExtraSpaceBelow : 0;
+	}
+
+	/**
+	 * Removes view that are outside of the visible part of the list and the
+	 * extra layout space around it. If that still leaves more children than
+	 * we're allowed, the extra space is given up too.
+	 * 
+	 * @param offset
+	 *            Offset of the visible area
+	 */
+	private void removeNonVisibleViews(final int offset) {
+		removeViewsOutside(offset - mExtraSpaceAbove, offset + mParentHeight + mExtraSpaceBelow);
+		if(getChildCount() > mMaxAttachedChildren)
+			removeViewsOutside(offset, offset + mParentHeight);
+	}
+
+	private void removeViewsOutside(final int top, final int bottom) {
+		ColumnView poppedView;
+		for(int i = 0; i < mNumberOfColumns; i++) {
+			// Remove hidden views from top of columns
+			while(mColumns[i].peekTopView() != null 
+					&& mColumns[i].peekTopView().view.getBottom() < top) {
+				poppedView = mColumns[i].popTopView();
+				scrapView(poppedView);
+                if(DEBUG) Log.d(TAG, "View child detached from top - total of " + getChildCount() + " children.");
+			}
+			// Remove hidden views from bottom of columns
+			while(mColumns[i].peekBottomView() != null 
+					&& mColumns[i].peekBottomView().view.getTop() > bottom) {
+				poppedView = mColumns[i].popBottomView();
+				scrapView(poppedView);
+                if(DEBUG) Log.d(TAG, "View child detached from bottom - total of " + getChildCount() + " children.");
+			}
+		}
+	}
+
+	/**
+	 * Detaches a view that has gone off screen and holds on to it for a
+	 * short while, in case it comes straight back.
+	 *
+	 * @param columnView
+	 *            The view that was popped off a column.
+	 */
+	private void scrapView(ColumnView columnView) {
+		if(columnView.placeholder) {
+			// Nothing worth keeping - the item was never bound.
+			removeViewInLayout(columnView.view);
+			recycleView(columnView);
+			return;
+		}
+		detachViewFromParent(columnView.view);
+		columnView.detached = true;
+		ColumnView evicted = mScrapHeap.put(columnView, SystemClock.uptimeMillis());
+		if(evicted != null) {
+			recycleView(evicted);
+		}
+		if(!mScrapTrimPending) {
+			mScrapTrimPending = true;
+			postDelayed(mTrimScrapRunnable, SCRAP_LIFETIME_MS);
+		}
+	}
+
+	/**
+	 * Puts a view that is no longer needed into the cache of re-usable
+	 * views, finishing its removal first if it was only detached.
+	 *
+	 * @param columnView
+	 *            The view to recycle.
+	 */
+	private void recycleView(ColumnView columnView) {
+		if(columnView.detached) {
+			removeDetachedView(columnView.view, false);
+			columnView.detached = false;
+		}
+		if(columnView.placeholder) {
+			if(mPlaceholderViews.size() < MAX_PLACEHOLDER_VIEWS)
+				mPlaceholderViews.add(columnView.view);
+			return;
+		}
+		if(mImageRequestScheduler != null)
+			mImageRequestScheduler.cancel(columnView.view);
+		mRecycleBin.add(columnView.viewType, columnView.view);
+	}
+
+	/**
+	 * Fully removes every view in the scrap heap. Needed whenever the
+	 * detached views may no longer be valid - the data or column width has
+	 * changed - or we're going away.
+	 */
+	private void clearScrapHeap() {
+		mScrapBuffer.clear();
+		mScrapHeap.clear(mScrapBuffer);
+		for(ColumnView cv : mScrapBuffer) {
+			recycleView(cv);
+		}
+		mScrapBuffer.clear();
+	}
+
+	/***
+	 * Fills the list up and down from a given offset.
+	 * 
+	 * @param offset
+	 *            The number of pixels to the top of where the list is scrolled
+	 *            to.
+	 */
+	private void fillList(final int offset) {
+		if(mRestored) {
+			for(int i = 0; i < mColumns.length; i++) {
+				int top = mColumns[i].getTop();
+				ColumnViewRing shown = mColumns[i].viewsShown;
+				for(int j = 0; j < shown.size(); j++) {
+					ColumnView cv = shown.get(j);
+					layoutExistingChild(cv.view, i, top);
+					top += (mVerticalSpacing + cv.view.getMeasuredHeight());
+				}
+			}
+			mRestored = false;
+		}
+		if(offset > getWallTop()) {
+			fillListUp(offset);
+		}
+		fillListDown(offset);
+	}
+	
+	private ColumnView getViewForIndex(int adapterIndex) {
+		ColumnView cv = mViewsAcquiredFromAdapterDuringMeasure.get(adapterIndex);
+		mViewsAcquiredFromAdapterDuringMeasure.delete(adapterIndex);
+		if(cv == null) {
+			// Still bound and measured if it only just went off screen.
+			cv = mScrapHeap.take(adapterIndex);
+		}
+		if(cv == null) {
+			long profileStart = profileStart();
+			int viewType = mAdapter.getItemViewType(adapterIndex);
+			View v = mAdapter.getView(adapterIndex, getCachedView(viewType), this);
+			profileStart = profileEnd(ScrollProfiler.PHASE_BIND, profileStart);
+			cv = new ColumnView(new AdapterViewDetails(v.getMeasuredWidth(), v.getMeasuredHeight(), adapterIndex), v);
+			cv.viewType = viewType;
+			measureChild(v);
+			profileEnd(ScrollProfiler.PHASE_MEASURE, profileStart);
+			mHeightEstimator.setItemSize(adapterIndex, cv.details.width, cv.details.height,
+					v.getMeasuredHeight());
+		}
+		return cv;
+	}
+
+	/**
+	 * Gets the view to fill an item's place with: its bound view if there's
+	 * time left in this frame's budget, or it's bound already, otherwise a
+	 * placeholder to be bound on a later frame.
+	 */
+	private ColumnView getViewOrPlaceholder(int adapterIndex) {
+		if(isFillBudgetSpent() && mViewsAcquiredFromAdapterDuringMeasure.get(adapterIndex) == null
+				&& !mScrapHeap.contains(adapterIndex)) {
+			schedulePlaceholderBinds();
+			return getPlaceholderForIndex(adapterIndex);
+		}
+		return getViewForIndex(adapterIndex);
+	}
+
+	/**
+	 * @return A placeholder for an item, at its known height or, failing
+	 *         that, the average.
+	 */
+	private ColumnView getPlaceholderForIndex(int adapterIndex) {
+		int height = getEstimatedItemHeight(adapterIndex);
+		int originalWidth = mHeightEstimator.getOriginalWidth(adapterIndex);
+		int originalHeight = mHeightEstimator.getOriginalHeight(adapterIndex);
+		AdapterViewDetails details;
+		if(originalWidth > 0 && originalHeight > 0) {
+			details = new AdapterViewDetails(originalWidth, originalHeight, adapterIndex);
+		} else {
+			// Scales like the estimate if the column width changes.
+			details = new AdapterViewDetails((int) mColumnWidth, height, adapterIndex);
+		}
+		View view = mPlaceholderViews.isEmpty() ? null
+				: mPlaceholderViews.remove(mPlaceholderViews.size() - 1);
+		if(view == null) {
+			view = new View(getContext());
+			view.setBackgroundColor(mPlaceholderColor);
+		}
+		view.measure(mChildWidthSpec, MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY));
+		ColumnView cv = new ColumnView(details, view);
+		cv.viewType = Adapter.IGNORE_ITEM_VIEW_TYPE;
+		cv.placeholder = true;
+		return cv;
+	}
+
+	/**
+	 * Starts timing this frame's fill, unless it's already being timed. The
+	 * time counts from here, so the outermost fill pass of the frame spends
+	 * the budget along with any passes it starts.
+	 *
+	 * @return True if timing started here, and should be ended here.
+	 */
+	private boolean startFillBudget() {
+		if(mFillStart != 0)
+			return false;
+		mFillStart = SystemClock.uptimeMillis();
+		return true;
+	}
+
+	private void endFillBudget(boolean started) {
+		if(started)
+			mFillStart = 0;
+	}
+
+	private boolean isFillBudgetSpent() {
+		return mFillBudgetMs > 0 && mFillStart != 0
+				&& SystemClock.uptimeMillis() - mFillStart >= mFillBudgetMs;
+	}
+
+	private void schedulePlaceholderBinds() {
+		if(!mBindPlaceholdersPending) {
+			mBindPlaceholdersPending = true;
+			postOnNextFrame(mBindPlaceholdersRunnable);
+		}
+	}
+
+	/**
+	 * Puts off binding placeholders until the next layout, e.g. because
+	 * the data has changed and frame callbacks run before it.
+	 */
+	private void cancelPlaceholderBinds() {
+		removeCallbacks(mBindPlaceholdersRunnable);
+		mBindPlaceholdersPending = false;
+	}
+
+	/**
+	 * Replaces placeholders with bound views, nearest the screen first,
+	 * until this frame's budget is spent. At least one is bound each frame,
+	 * so they all get bound however slow the adapter is.
 	 */
-	private void fillList(final int offset) {
-		if(mRestored) {
-			for(int i = 0; i < mColumns.length; i++) {
-				int top = mColumns[i].getTop();
-				for(int j = 0; j < mColumns[i].viewsShown.size(); j++) {
-					ColumnView cv = mColumns[i].viewsShown.get(j);
-					layoutExistingChild(cv.view, i, top);
-					top += (mVerticalSpacing + cv.view.getMeasuredHeight());
+	private void bindPlaceholders() {
+		if(mAdapter == null || mColumns == null)
+			return;
+		final int count = mAdapter.getCount();
+		final boolean budgetStarted = startFillBudget();
+		boolean moved = false;
+		boolean remaining = false;
+		int boundCount = 0;
+		mBlockLayoutRequests = true;
+		try {
+			while(true) {
+				int nearestColumn = -1;
+				ColumnView nearest = null;
+				int nearestDistance = Integer.MAX_VALUE;
+				for(int i = 0; i < mColumns.length; i++) {
+					for(ColumnView cv : mColumns[i].viewsShown) {
+						// Past the end of the data, and waiting for the next
+						// layout to drop it.
+						if(!cv.placeholder || cv.details.index >= count)
+							continue;
+						int distance = Math.max(0, Math.max(mScrolledPosition - cv.view.getBottom(),
+								cv.view.getTop() - mScrolledPosition - mParentHeight));
+						if(distance < nearestDistance) {
+							nearestColumn = i;
+							nearest = cv;
+							nearestDistance = distance;
+						}
+					}
+				}
+				if(nearest == null)
+					break;
+				if(boundCount > 0 && isFillBudgetSpent()) {
+					remaining = true;
+					break;
 				}
+				if(bindPlaceholder(nearestColumn, nearest))
+					moved = true;
+				boundCount++;
 			}
-			mRestored = false;
-		}
-		if(offset > 0) {
-			fillListUp(offset);
+			if(moved) {
+				// Views moved, so there may be gaps to fill or views to drop.
+				removeNonVisibleViews(mScrolledPosition);
+				fillListDown(mScrolledPosition);
+			}
+		} finally {
+			mBlockLayoutRequests = false;
+			endFillBudget(budgetStarted);
 		}
-		fillListDown(offset);
+		if(remaining)
+			schedulePlaceholderBinds();
+		invalidate();
+		scheduleScrollNotify();
 	}
-	
-	private ColumnView getViewForIndex(int adapterIndex) {
-		ColumnView cv = mViewsAcquiredFromAdapterDuringMeasure.get(adapterIndex);
-		mViewsAcquiredFromAdapterDuringMeasure.delete(adapterIndex);
-		if(cv == null) {
-			View v = mAdapter.getView(adapterIndex, getCachedView(), this);
-			cv = new ColumnView(new AdapterViewDetails(v.getMeasuredWidth(), v.getMeasuredHeight(), adapterIndex), v);
-			measureChild(v);
+
+	/**
+	 * Binds the item a placeholder stands for and puts its view in the
+	 * placeholder's place. If it's a different height, the views below it
+	 * move - or, if it's above the screen, the views above it, so nothing on
+	 * screen jumps.
+	 *
+	 * @return True if views moved.
+	 */
+	private boolean bindPlaceholder(int columnIndex, ColumnView placeholder) {
+		Column column = mColumns[columnIndex];
+		int position = column.viewsShown.indexOf(placeholder);
+		if(position < 0)
+			return false;
+		View old = placeholder.view;
+		int left = old.getLeft();
+		int top = old.getTop();
+		int oldHeight = old.getMeasuredHeight();
+		boolean aboveScreen = old.getBottom() <= mScrolledPosition;
+		int childIndex = indexOfChild(old);
+		ColumnView bound = getViewForIndex(placeholder.details.index);
+		removeViewInLayout(old);
+		recycleView(placeholder);
+
+		View child = bound.view;
+		child.layout(left, top, left + child.getMeasuredWidth(), top + child.getMeasuredHeight());
+		column.viewsShown.set(position, bound);
+		attachChild(bound, childIndex);
+
+		int delta = child.getMeasuredHeight() - oldHeight;
+		if(delta == 0)
+			return false;
+		if(aboveScreen) {
+			// Move everything down to here up, then the rest back down.
+			column.shiftViewsBelow(null, -delta);
+			column.shiftViewsBelow(bound, delta);
+		} else {
+			column.shiftViewsBelow(bound, delta);
 		}
-		return cv;
+		return true;
 	}
 
 	/**
@@ -278,26 +2327,33 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 	 *            Offset of the visible area
 	 */
 	private void fillListDown(final int offset) {
-		int shortestColumnIndex = findShortestColumnIndex(mColumns);
-		int shortestEdge = mColumns[shortestColumnIndex].getBottom();
-		ColumnView newBottomChild;
-		int adapterIndex;
-		while (shortestEdge - offset <= mParentHeight) {
-			// We've reached the bottom of our previously seen views, need a new one.
-			if(mColumns[shortestColumnIndex].getBottomHiddenViews().isEmpty()) {
-				// The adapter has run out of views - stop adding views.
-				if(mNextItemPosition >= mAdapter.getCount()) break;
-				adapterIndex = mNextItemPosition;
-				mNextItemPosition++;
-			} else { // We've got a previously seen view to add.
-				adapterIndex = mColumns[shortestColumnIndex].getBottomHiddenViews().getFirst().index; 
+		final long profileStart = profileStart();
+		final boolean budgetStarted = startFillBudget();
+		try {
+			int shortestColumnIndex = findShortestColumnIndex(mColumns);
+			int shortestEdge = mColumns[shortestColumnIndex].getBottom();
+			ColumnView newBottomChild;
+			int adapterIndex;
+			while (shortestEdge - offset <= mParentHeight + getExtraSpaceBelowForFill()) {
+				// We've reached the bottom of our previously seen views, need a new one.
+				if(mColumns[shortestColumnIndex].getBottomHiddenViews().isEmpty()) {
+					// The adapter has run out of views - stop adding views.
+					if(mNextItemPosition >= mAdapter.getCount()) break;
+					adapterIndex = mNextItemPosition;
+					mNextItemPosition++;
+				} else { // We've got a previously seen view to add.
+					adapterIndex = mColumns[shortestColumnIndex].getBottomHiddenViews().getFirst().index; 
+				}
+				newBottomChild = getViewOrPlaceholder(adapterIndex);
+				addAndLayoutChild(newBottomChild, LAYOUT_MODE_BELOW, shortestColumnIndex);
+				mColumns[shortestColumnIndex].addBottom(newBottomChild);
+				shortestColumnIndex = findShortestColumnIndex(mColumns);
+				shortestEdge = mColumns[shortestColumnIndex].getBottom();
 			}
-			newBottomChild = getViewForIndex(adapterIndex);
-			addAndLayoutChild(newBottomChild.view, LAYOUT_MODE_BELOW, shortestColumnIndex);
-			mColumns[shortestColumnIndex].addBottom(newBottomChild);
-			shortestColumnIndex = findShortestColumnIndex(mColumns);
-			shortestEdge = mColumns[shortestColumnIndex].getBottom();
+		} finally {
+			endFillBudget(budgetStarted);
 		}
+		profileEnd(ScrollProfiler.PHASE_FILL, profileStart);
 	}
 
 	/**
@@ -307,34 +2363,70 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 	 *            Offset of the visible area
 	 */
 	private void fillListUp(final int offset) {
+		final long profileStart = profileStart();
 		if(DEBUG) Log.d(TAG, "fillListUp called with offset " + offset);
-		Column currentColumn;
-		int adapterIndex;
-		ColumnView newTopChild;
-		for(int currentColumnIndex = 0; currentColumnIndex < mNumberOfColumns; currentColumnIndex++) {
-			currentColumn = mColumns[currentColumnIndex];
-			while (currentColumn.getTop() > offset) {
-				// If we're filling up, we've always already seen these views,
-				// so we can add until the stack is empty or our view is full.
-				if(mColumns[currentColumnIndex].getTopHiddenViews().isEmpty())
+		final boolean budgetStarted = startFillBudget();
+		try {
+			Column currentColumn;
+			int adapterIndex;
+			ColumnView newTopChild;
+			boolean drifted = false;
+			for(int currentColumnIndex = 0; currentColumnIndex < mNumberOfColumns; currentColumnIndex++) {
+				currentColumn = mColumns[currentColumnIndex];
+				while(true) {
+					while (currentColumn.getTop() > offset - getExtraSpaceAboveForFill()) {
+						// If we're filling up, we've always already seen these views,
+						// so we can add until the stack is empty or our view is full.
+						if(currentColumn.getTopHiddenViews().isEmpty())
+							break;
+						adapterIndex = currentColumn.getTopHiddenViews().getLast().index;
+						newTopChild = getViewOrPlaceholder(adapterIndex);
+						addAndLayoutChild(newTopChild, LAYOUT_MODE_ABOVE, currentColumnIndex);
+						currentColumn.addTop(newTopChild);
+					}
+					if(currentColumn.getTopHiddenViews().isEmpty()) {
+						if(currentColumn.getTop() != getWallTop()) {
+							// Items placed at an estimated height (after restoring
+							// an anchor) turned out a different size - line the
+							// column back up with the top of the wall.
+							currentColumn.shiftViewsBelow(null, getWallTop() - currentColumn.getTop());
+							drifted = true;
+						}
+					} else if(currentColumn.getTop() <= getWallTop()) {
+						// They turned out taller, and the items still hidden
+						// would be out of reach above the top of the wall. Move
+						// the column down to make room for them at the average
+						// height, and carry on filling.
+						int room = Math.max(1, Math.round(currentColumn.getTopHiddenCount()
+								* mHeightEstimator.getAverageItemHeight()));
+						currentColumn.shiftViewsBelow(null, getWallTop() - currentColumn.getTop() + room);
+						drifted = true;
+						continue;
+					}
 					break;
-				adapterIndex = mColumns[currentColumnIndex].getTopHiddenViews().getLast().index;
-				newTopChild = getViewForIndex(adapterIndex);
-				addAndLayoutChild(newTopChild.view, LAYOUT_MODE_ABOVE, currentColumnIndex);
-				currentColumn.addTop(newTopChild);
+				}
 			}
+			if(drifted) {
+				removeNonVisibleViews(offset);
+				fillListDown(offset);
+			}
+		} finally {
+			endFillBudget(budgetStarted);
 		}
+		profileEnd(ScrollProfiler.PHASE_FILL, profileStart);
 	}
 
 	/**
-	 * Adds a view as a child view and takes care of laying it out
+	 * Adds a view as a child view and takes care of laying it out. Views
+	 * coming back from the scrap heap are re-attached rather than added.
 	 * 
-	 * @param child
+	 * @param columnView
 	 *            The view to add
 	 * @param layoutMode
 	 *            Either LAYOUT_MODE_ABOVE or LAYOUT_MODE_BELOW
 	 */
-	private void addAndLayoutChild(final View child, final int layoutMode, int columnNumber) {
+	private void addAndLayoutChild(final ColumnView columnView, final int layoutMode, int columnNumber) {
+		final View child = columnView.view;
 		int left = this.mPaddingL + (int) (this.mColumnWidth * columnNumber)
 		+ (this.mHorizontalSpacing * columnNumber);
 		int childHeight = child.getMeasuredHeight();
@@ -346,18 +2438,38 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 			topOfChildView = mColumns[columnNumber].getTop() - childHeight
 					- mVerticalSpacing + this.mPaddingT;
 		}
+		long profileStart = profileStart();
 		child.layout(left, topOfChildView, left + childWidth,
 				topOfChildView + childHeight);
+		profileStart = profileEnd(ScrollProfiler.PHASE_LAYOUT, profileStart);
+		// -1 means put it at the end, 0 means at the beginning.
+		final int index = layoutMode == LAYOUT_MODE_ABOVE ? 0 : -1;
+		attachChild(columnView, index);
+		profileEnd(ScrollProfiler.PHASE_ATTACH, profileStart);
+        if(DEBUG) Log.d(TAG, "View child added to " + (index == -1 ? "bottom" : "top")
+                + " - total of " + getChildCount() + " children.");
+	}
+
+	/**
+	 * Adds a laid out view as a child, or re-attaches it if it's only
+	 * detached.
+	 *
+	 * @param index
+	 *            Where to put it among the children, or -1 for the end.
+	 */
+	private void attachChild(final ColumnView columnView, int index) {
+		final View child = columnView.view;
 		LayoutParams params = child.getLayoutParams();
 		if (params == null) {
 			params = new LayoutParams(LayoutParams.WRAP_CONTENT,
 					LayoutParams.WRAP_CONTENT);
 		}
-		// -1 means put it at the end, 0 means at the beginning.
-		final int index = layoutMode == LAYOUT_MODE_ABOVE ? 0 : -1;
-		addViewInLayout(child, index, params, true);
-        if(DEBUG) Log.d(TAG, "View child added to " + (index == -1 ? "bottom" : "top")
-                + " - total of " + getChildCount() + " children.");
+		if(columnView.detached) {
+			attachViewToParent(child, index, params);
+			columnView.detached = false;
+		} else {
+			addViewInLayout(child, index, params, true);
+		}
 	}
 	
 	private void layoutExistingChild(final View child, final int columnNumber, int top) {
@@ -372,13 +2484,192 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 	/**
 	 * Checks if there is a cached view that can be used
 	 * 
+	 * @param viewType
+	 *            The adapter's view type for the item.
 	 * @return A cached view or, if none was found, null
 	 */
-	private View getCachedView() {
-		if (mCachedItemViews.size() != 0) {
-			return mCachedItemViews.removeFirst();
+	private View getCachedView(int viewType) {
+		return mRecycleBin.take(viewType);
+	}
+
+	/**
+	 * Creates item views ahead of time on a background thread and adds them
+	 * to the views the layout re-uses, so filling the first screen only has
+	 * to bind views rather than inflate them. Call it as early as possible,
+	 * e.g. straight after inflating the layout in onCreate(). Call it once
+	 * per view type the adapter uses.
+	 *
+	 * @param factory
+	 *            Creates the views. They must be just what the adapter's
+	 *            getView(...) would create for a null convertView.
+	 * @param viewType
+	 *            The adapter's view type to create.
+	 * @param count
+	 *            How many views to create - about as many as fit on screen.
+	 */
+	public void preInflateItemViews(ItemViewFactory factory, int viewType, int count) {
+		for(int i = mPreInflaters.size() - 1; i >= 0; i--) {
+			if(mPreInflaters.get(i).isFinished())
+				mPreInflaters.remove(i);
+		}
+		PreInflater preInflater = new PreInflater(this, factory, viewType, count);
+		mPreInflaters.add(preInflater);
+		preInflater.start();
+	}
+
+	/**
+	 * Stops any pre-inflation that is still running.
+	 */
+	public void cancelPreInflation() {
+		for(PreInflater p : mPreInflaters) {
+			p.cancel();
+		}
+		mPreInflaters.clear();
+	}
+
+	/**
+	 * Sets what runs the wall's background work, e.g. a
+	 * {@link SynchronousWallExecutor} in tests. Work already started on the
+	 * old executor is cancelled.
+	 *
+	 * @param executor
+	 *            The executor, or null for the shared
+	 *            {@link LanedWallExecutor}. The wall doesn't shut it down.
+	 */
+	public void setBackgroundExecutor(WallExecutor executor) {
+		if(executor == mBackgroundExecutor)
+			return;
+		cancelBackgroundTasks();
+		mBackgroundExecutor = executor;
+	}
+
+	/**
+	 * @return What runs the wall's background work.
+	 */
+	public WallExecutor getBackgroundExecutor() {
+		if(mBackgroundExecutor != null)
+			return mBackgroundExecutor;
+		return getDefaultExecutor();
+	}
+
+	/**
+	 * @return The {@link LanedWallExecutor} shared by every wall not given
+	 *         an executor of its own.
+	 */
+	static WallExecutor getDefaultExecutor() {
+		synchronized(AntipodalWallLayout.class) {
+			if(sDefaultExecutor == null)
+				sDefaultExecutor = new LanedWallExecutor();
+			return sDefaultExecutor;
+		}
+	}
+
+	/**
+	 * Runs a task's background half on the wall's executor, in the task's
+	 * lane. The result is handed to the task on the UI thread along with
+	 * every other result that arrived in the same frame. If the wall is
+	 * detached from its window first, the task is cancelled. Call on the UI
+	 * thread.
+	 *
+	 * @param task
+	 *            The task to run. Each task can only be run once.
+	 */
+	public void runInBackground(WallTask task) {
+		if(task.wall != null || task.isCancelled())
+			throw new IllegalStateException("A WallTask can only be run once");
+		WallExecutor executor = getBackgroundExecutor();
+		task.wall = this;
+		task.sequence = executor.nextSequence();
+		mBackgroundTasks.add(task);
+		executor.execute(task);
+	}
+
+	/**
+	 * @param lane
+	 *            One of WallExecutor.LANE_*.
+	 * @return An Executor that runs plain Runnables in a lane of the wall's
+	 *         executor - e.g. for a {@link TextLayoutCache} or
+	 *         {@link WindowedAdapter}. Unlike tasks started with
+	 *         {@link #runInBackground(WallTask)}, they aren't cancelled when
+	 *         the wall is detached: whoever passed them keeps its own note of
+	 *         what's in flight, which would go stale if one were dropped.
+	 *         Use it from the UI thread.
+	 */
+	public Executor getLaneExecutor(final int lane) {
+		return new Executor() {
+			public void execute(Runnable command) {
+				executeInLane(getBackgroundExecutor(), lane, command);
+			}
+		};
+	}
+
+	/**
+	 * Like {@link #getLaneExecutor(int)}, for work with no wall to hand:
+	 * runs Runnables in a lane of the shared {@link LanedWallExecutor}.
+	 */
+	static Executor getDefaultLaneExecutor(final int lane) {
+		return new Executor() {
+			public void execute(Runnable command) {
+				executeInLane(getDefaultExecutor(), lane, command);
+			}
+		};
+	}
+
+	private static void executeInLane(WallExecutor executor, int lane, final Runnable command) {
+		// No wall to deliver to, and not tracked for cancelling.
+		WallTask task = new WallTask(lane) {
+			@Override
+			protected Object doInBackground() {
+				command.run();
+				return null;
+			}
+		};
+		task.sequence = executor.nextSequence();
+		executor.execute(task);
+	}
+
+	/**
+	 * Called by a task on whichever thread ran it.
+	 */
+	void onBackgroundTaskFinished(WallTask task) {
+		mFinishedTasks.add(task);
+		if(mDeliveryPending.compareAndSet(false, true))
+			postOnNextFrame(mDeliverResultsRunnable);
+	}
+
+	/**
+	 * Called by {@link WallTask#cancel()} on the UI thread.
+	 */
+	void cancelBackgroundTask(WallTask task) {
+		task.markCancelled();
+		if(mBackgroundTasks.remove(task)) {
+			getBackgroundExecutor().remove(task);
+			task.onCancelled();
+		}
+	}
+
+	/**
+	 * Cancels every background task that hasn't been delivered.
+	 */
+	private void cancelBackgroundTasks() {
+		if(mBackgroundTasks.isEmpty())
+			return;
+		WallExecutor executor = getBackgroundExecutor();
+		ArrayList<WallTask> tasks = new ArrayList<WallTask>(mBackgroundTasks);
+		mBackgroundTasks.clear();
+		mFinishedTasks.clear();
+		for(WallTask task : tasks) {
+			task.markCancelled();
+			executor.remove(task);
+			task.onCancelled();
 		}
-		return null;
+	}
+
+	/**
+	 * Called on the UI thread with each view a {@link PreInflater} creates.
+	 */
+	void addPreInflatedView(int viewType, View view) {
+		mRecycleBin.add(viewType, view);
 	}
 
 	@Override
@@ -396,16 +2687,29 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 		if (parentUsableWidth < 0)
 			parentUsableWidth = 0;
 
+		if(this.mParentHeight != MeasureSpec.getSize(heightMeasureSpec)) {
+			mDirtyFlags |= DIRTY_SIZE;
+		}
 		this.mParentHeight = MeasureSpec.getSize(heightMeasureSpec);
+		if(mScrollState == OnScrollListener.SCROLL_STATE_IDLE)
+			resetExtraLayoutSpace();
+		float oldColumnWidth = this.mColumnWidth;
 		this.mColumnWidth = parentUsableWidth
 				/ this.mNumberOfColumns
 				- ((this.mHorizontalSpacing * (this.mNumberOfColumns - 1)) / this.mNumberOfColumns);
-	    if(mViewWidth != parentWidth && mViewWidth > 0) {
-	    	// We have a different size view, so all our values need to be scaled.
+	    if(mViewWidth != parentWidth && mViewWidth > 0 && mColumns != null) {
+	    	// We have a different size view, so all our values need to be re-placed.
 	    	double scaleValue = (double)parentWidth / (double)mViewWidth;
-	    	scaleChildViews(scaleValue);
+	    	changeColumnWidth(oldColumnWidth, scaleValue);
 		}
+	    if(mViewWidth != parentWidth) {
+	    	mDirtyFlags |= DIRTY_SIZE | DIRTY_COLUMNS;
+	    	clearScrapHeap();
+	    	clearSnapshotTiles();
+	    }
 	    mViewWidth = parentWidth;
+	    mHeightEstimator.setColumnConfig(mNumberOfColumns, mColumnWidth, mVerticalSpacing);
+	    mHeightEstimator.setItemCount(mAdapter.getCount());
 		if(mColumns == null) {
 			mColumns = new Column[mNumberOfColumns];
 			for(int i = 0; i < mNumberOfColumns; i++) {
@@ -437,7 +2741,10 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 		// The final height is the height of the longest column, plus padding.
 		this.mFinalHeight = columnHeight + mPaddingB + mPaddingT;
         if(DEBUG) Log.d(TAG, "Final Measured Height: " + mFinalHeight);
-		setMeasuredDimension(parentWidth, this.mFinalHeight);
+		// Since a rebase the columns may end less than a screen below 0 in
+		// their own coordinates, but we still need to cover the screen.
+		setMeasuredDimension(parentWidth, mCoordinateBase == 0 ? mFinalHeight
+				: Math.max(mFinalHeight, mParentHeight));
 	}
 	
 	/***
@@ -447,9 +2754,21 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 	 *            The view to measure.
 	 */
 	private void measureChild(View newChild) {
+		measureChildToFit(newChild, newChild.getMeasuredWidth(), newChild.getMeasuredHeight());
+	}
+
+	/***
+	 * Measures a View to fit a column, given its original size.
+	 * 
+	 * @param newChild
+	 *            The view to measure.
+	 * @param originalWidth
+	 *            The original width of the view, or 0 if unknown.
+	 * @param originalHeight
+	 *            The original height of the view, or 0 if unknown.
+	 */
+	private void measureChildToFit(View newChild, int originalWidth, int originalHeight) {
 		int childHeightSpec;
-		int originalWidth = newChild.getMeasuredWidth();
-		int originalHeight = newChild.getMeasuredHeight();
 		/**
 		 * If either the measured height or width of the original is 0 that
 		 * probably just means that whoever supplied our view hasn't specified
@@ -486,18 +2805,38 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 
 	    AntipodalWallSavedState ss = new AntipodalWallSavedState(superState);
 	    //end
-	    
+
 	    ss.mNumberOfColumns = mNumberOfColumns;
-	    ss.mColumns = mColumns;
 	    
 	    ss.mFinalHeight = mFinalHeight;
 	    
+	    // Saved with what they're measured from, so saving doesn't have to
+	    // move anything on screen.
 	    ss.mScrolledPosition = mScrolledPosition;
+	    ss.mCoordinateBase = mCoordinateBase;
 	    
 	    ss.mNextItemPosition = mNextItemPosition;
 	    
 	    ss.mViewWidth = mViewWidth;
 
+	    if(mPendingAnchorPosition != INVALID_POSITION) {
+	    	// Not laid out since the last restore - pass it on as it was.
+	    	ss.mAnchorId = mPendingAnchorId;
+	    	ss.mAnchorPosition = mPendingAnchorPosition;
+	    	ss.mAnchorOffset = mPendingAnchorOffset;
+	    } else if(mAdapter != null && mAdapter.hasStableIds() && mColumns != null) {
+	    	ColumnView anchor = findAnchorView();
+	    	if(anchor != null && anchor.details.index < mAdapter.getCount()) {
+	    		ss.mAnchorId = mAdapter.getItemId(anchor.details.index);
+	    		ss.mAnchorPosition = anchor.details.index;
+	    		ss.mAnchorOffset = anchor.view.getTop() - mScrolledPosition;
+	    	}
+	    }
+	    if(ss.mAnchorPosition == INVALID_POSITION) {
+	    	// Only restored without an anchor.
+	    	ss.mColumns = mColumns;
+	    }
+
 	    return ss;
 	}
 
@@ -512,6 +2851,22 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 	    AntipodalWallSavedState ss = (AntipodalWallSavedState)state;
 	    super.onRestoreInstanceState(ss.getSuperState());
 	    //end
+
+	    if(ss.mAnchorPosition != INVALID_POSITION) {
+	    	// The data may have changed since, so the saved columns could
+	    	// point at the wrong items - start again and find the anchor.
+	    	mNumberOfColumns = ss.mNumberOfColumns;
+	    	resetPlacement();
+	    	mViewsAcquiredFromAdapterDuringMeasure.clear();
+	    	clearScrapHeap();
+	    	mPlacementSnapshots.clear();
+	    	clearSnapshotTiles();
+	    	mHeightEstimator.clear();
+	    	mPendingAnchorId = ss.mAnchorId;
+	    	mPendingAnchorPosition = ss.mAnchorPosition;
+	    	mPendingAnchorOffset = ss.mAnchorOffset;
+	    	return;
+	    }
 	    
 	    mNumberOfColumns = ss.mNumberOfColumns;
 	    mColumns = ss.mColumns;
@@ -519,6 +2874,7 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 	    mFinalHeight = ss.mFinalHeight;
 	    
 	    mScrolledPosition = ss.mScrolledPosition;
+	    mCoordinateBase = ss.mCoordinateBase;
 	    
 	    mNextItemPosition = ss.mNextItemPosition;
 	   
@@ -527,21 +2883,126 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 	    // Need to clear this as Android appears to cache parts (??) of the member variable.
 	    // Those views which get cached never get re-measured, so are their old size.
 	    mViewsAcquiredFromAdapterDuringMeasure.clear();
+	    clearScrapHeap();
+	    mPlacementSnapshots.clear();
+	    clearSnapshotTiles();
 	    
 	    mRestored = true;
+	    mDirtyFlags = DIRTY_ALL;
 	}
 	
+	/**
+	 * Re-places everything when the column width changes. If we've seen the
+	 * new width before (and nothing has changed since), the exact placement
+	 * from then is restored, otherwise every column is scaled. Either way
+	 * the view at the top of the screen stays there.
+	 *
+	 * @param oldColumnWidth
+	 *            The column width before the change.
+	 * @param scaleValue
+	 *            The ratio between the new and old width of the layout.
+	 */
+	private void changeColumnWidth(float oldColumnWidth, double scaleValue) {
+		// Placement snapshots and scaling work from the top of the wall.
+		rebaseCoordinates(getWallTop());
+		ColumnView anchor = findAnchorView();
+		int anchorOffset = anchor == null ? 0 : anchor.view.getTop() - mScrolledPosition;
+
+		// Remember exactly where everything was, for if we come back.
+		mPlacementSnapshots.put(PlacementSnapshot.key(oldColumnWidth, mNumberOfColumns),
+				new PlacementSnapshot(mColumns, mHeightEstimator.copyHeights()));
+		mHeightEstimator.setColumnConfig(mNumberOfColumns, mColumnWidth, mVerticalSpacing);
+
+		PlacementSnapshot snapshot = mPlacementSnapshots.get(
+				PlacementSnapshot.key(mColumnWidth, mNumberOfColumns));
+		boolean restored = false;
+		if(snapshot != null && snapshot.columnTops.length == mColumns.length) {
+			mHeightEstimator.setHeights(snapshot.heights);
+			restored = true;
+			for(int i = 0; i < mColumns.length && restored; i++) {
+				restored = mColumns[i].restorePlacement(snapshot.columnTops[i],
+						snapshot.topHiddenCounts[i], mHeightEstimator, mColumnWidth);
+			}
+		}
+		if(restored) {
+			if(DEBUG) Log.d(TAG, "Restored placement snapshot for column width " + mColumnWidth);
+			mFinalHeight = mColumns[findLongestColumnIndex(mColumns)].getBottom() + mPaddingT + mPaddingB;
+		} else {
+			scaleChildViews(scaleValue);
+		}
+
+		int scrolledPosition = -1;
+		if(anchor != null) {
+			int anchorTop = findTopOfShownView(anchor);
+			if(anchorTop >= 0)
+				scrolledPosition = anchorTop - anchorOffset;
+		}
+		if(scrolledPosition < 0) {
+			scrolledPosition = (int) (mScrolledPosition * scaleValue);
+		}
+		scrolledPosition = Math.max(0, scrolledPosition);
+		scrollBy(0, scrolledPosition - mScrolledPosition);
+		mScrolledPosition = scrolledPosition;
+		layoutShownViews();
+		mDirtyFlags |= DIRTY_SCROLL;
+		invalidate();
+	}
+
 	private void scaleChildViews(double scaleValue) {
 		for(int i = 0; i < mNumberOfColumns; i++) {
     		mColumns[i].scaleBy(mColumnWidth);
     	}
 		// We don't scale the padding values - drop em off then add back on again.
     	mFinalHeight = (int)(((mFinalHeight - mPaddingT - mPaddingB) * scaleValue) + mPaddingT + mPaddingB);
-    	int scrollDistance = mScrolledPosition;
-    	mScrolledPosition *= scaleValue;
-    	scrollDistance = mScrolledPosition - scrollDistance;
-    	scrollBy(0, scrollDistance);
-    	invalidate();
+	}
+
+	/**
+	 * @return The shown view nearest the top of the visible area, or null
+	 *         if there are none.
+	 */
+	private ColumnView findAnchorView() {
+		ColumnView anchor = null;
+		for(Column c : mColumns) {
+			for(ColumnView cv : c.viewsShown) {
+				if(cv.view.getBottom() > mScrolledPosition
+						&& (anchor == null || cv.view.getTop() < anchor.view.getTop())) {
+					anchor = cv;
+				}
+			}
+		}
+		return anchor;
+	}
+
+	/**
+	 * @return Where the top of a shown view belongs according to its
+	 *         column, or -1 if it isn't shown.
+	 */
+	private int findTopOfShownView(ColumnView target) {
+		for(Column c : mColumns) {
+			int top = c.getTop() + mPaddingT;
+			for(ColumnView cv : c.viewsShown) {
+				if(cv == target)
+					return top;
+				top += cv.view.getMeasuredHeight() + mVerticalSpacing;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Lays out every shown view where its column says it belongs.
+	 */
+	private void layoutShownViews() {
+		for(int i = 0; i < mColumns.length; i++) {
+			int left = this.mPaddingL + (int) (this.mColumnWidth * i)
+					+ (this.mHorizontalSpacing * i);
+			int top = mColumns[i].getTop() + mPaddingT;
+			for(ColumnView cv : mColumns[i].viewsShown) {
+				int height = cv.view.getMeasuredHeight();
+				cv.view.layout(left, top, left + cv.view.getMeasuredWidth(), top + height);
+				top += height + mVerticalSpacing;
+			}
+		}
 	}
 	
 	@Override
@@ -553,40 +3014,214 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 			return;
 		}
 
-		if (getChildCount() == 0) {
-			mNextItemPosition = 0;
-			mScrolledPosition = 0;
-		} else {
-			removeNonVisibleViews(mScrolledPosition);
+		if (!changed && mDirtyFlags == 0 && getChildCount() > 0) {
+			// Nothing we care about has changed since the last pass.
+			mSkippedLayoutPasses++;
+			if(DEBUG) Log.d(TAG, "onLayout() skipped - " + mSkippedLayoutPasses + " passes skipped so far.");
+			return;
+		}
+
+		boolean dataChanged = (mDirtyFlags & DIRTY_DATA) != 0;
+		mBlockLayoutRequests = true;
+		try {
+			if (getChildCount() == 0) {
+				mNextItemPosition = 0;
+				mScrolledPosition = 0;
+			} else {
+				removeNonVisibleViews(mScrolledPosition);
+			}
+			if (mPendingAnchorPosition != INVALID_POSITION && mAdapter.getCount() > 0)
+				restorePendingAnchor();
+			fillList(mScrolledPosition);
+		} finally {
+			mBlockLayoutRequests = false;
 		}
-		fillList(mScrolledPosition);
+		// Binds put off when the data changed, now against the new data.
+		if (dataChanged && mColumns != null)
+			schedulePlaceholderBinds();
+		mDirtyFlags = 0;
 		invalidate();
+		scheduleScrollNotify();
+	}
+
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH
+				&& mTrimMemoryCallbacks == null) {
+			mTrimMemoryCallbacks = new TrimMemoryCallbacks(this);
+			getContext().getApplicationContext().registerComponentCallbacks(mTrimMemoryCallbacks);
+		}
+		// Placeholders left unbound when we were detached.
+		if(mColumns != null)
+			schedulePlaceholderBinds();
+	}
+
+	@Override
+	protected void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+		if(mTrimMemoryCallbacks != null) {
+			getContext().getApplicationContext().unregisterComponentCallbacks(mTrimMemoryCallbacks);
+			mTrimMemoryCallbacks = null;
+		}
+		removeCallbacks(mTrimScrapRunnable);
+		mScrapTrimPending = false;
+		removeCallbacks(mScrollFrameRunnable);
+		mScrollFramePending = false;
+		mPendingScrollDistance = 0;
+		removeCallbacks(mNotifyScrollRunnable);
+		mScrollNotifyPending = false;
+		cancelPlaceholderBinds();
+		stopFling();
+		clearScrapHeap();
+		cancelPreInflation();
+		cancelBackgroundTasks();
+		removeCallbacks(mDeliverResultsRunnable);
+		mDeliveryPending.set(false);
+	}
+
+	/**
+	 * Releases memory according to how hard pressed the system is. Called
+	 * automatically on API 14+; on older platforms call it yourself, e.g.
+	 * with TRIM_MEMORY_COMPLETE from Activity.onLowMemory().
+	 *
+	 * @param level
+	 *            One of the ComponentCallbacks2.TRIM_MEMORY_* levels.
+	 */
+	public void onTrimMemory(int level) {
+		if(DEBUG) Log.d(TAG, "onTrimMemory(" + level + ") - before: " + getMemoryFootprint());
+		if(level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+			// Views that just went off screen are the cheapest to give up.
+			clearScrapHeap();
+			trimCachedViews(getChildCount());
+		}
+		if(level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+			// Views bound ahead of time, and the whole recycle pool.
+			for(int i = 0; i < mViewsAcquiredFromAdapterDuringMeasure.size(); i++) {
+				recycleView(mViewsAcquiredFromAdapterDuringMeasure.valueAt(i));
+			}
+			mViewsAcquiredFromAdapterDuringMeasure.clear();
+			cancelPreInflation();
+			trimCachedViews(0);
+			mPlaceholderViews.clear();
+			mPlacementSnapshots.clear();
+			if(mSnapshotTiles != null)
+				mSnapshotTiles.release();
+		}
+		if(level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND && mColumns != null) {
+			for(Column c : mColumns) {
+				c.compactHiddenViews(HIDDEN_VIEWS_KEPT_ON_TRIM);
+			}
+		}
+		if(DEBUG) Log.d(TAG, "onTrimMemory(" + level + ") - after: " + getMemoryFootprint());
+	}
+
+	private void trimCachedViews(int maxSize) {
+		mRecycleBin.trim(maxSize);
+	}
+
+	/**
+	 * @return A report of the views and bookkeeping this layout is holding
+	 *         on to.
+	 */
+	public MemoryFootprint getMemoryFootprint() {
+		int hidden = 0;
+		int compacted = 0;
+		if(mColumns != null) {
+			for(Column c : mColumns) {
+				hidden += c.topHiddenViews.size() + c.bottomHiddenViews.size();
+				compacted += c.getCompactedHiddenViewCount();
+			}
+		}
+		return new MemoryFootprint(getChildCount(), mRecycleBin.size(), mScrapHeap.size(),
+				mViewsAcquiredFromAdapterDuringMeasure.size(), hidden, compacted,
+				mHeightEstimator.getFootprintBytes());
+	}
+
+	@Override
+	public void requestLayout() {
+		if (mBlockLayoutRequests) {
+			mBlockedLayoutRequests++;
+			return;
+		}
+		super.requestLayout();
+	}
+
+	/**
+	 * @return The number of layout passes that were skipped because nothing
+	 *         had changed since the previous pass.
+	 */
+	public int getSkippedLayoutPassCount() {
+		return mSkippedLayoutPasses;
+	}
+
+	/**
+	 * @return The number of layout requests (usually from children being
+	 *         bound) that were swallowed while we were adding and removing
+	 *         children during a scroll or layout pass.
+	 */
+	public int getBlockedLayoutRequestCount() {
+		return mBlockedLayoutRequests;
+	}
+
+	@Override
+	protected void dispatchDraw(Canvas canvas) {
+		if(mSnapshotCapturePending && mSnapshotTiles != null) {
+			// The views are still where the wall is really scrolled to,
+			// even if snapshot mode has started since it was asked for.
+			drawSnapshotTile();
+		}
+		if(mSnapshotMode) {
+			drawSnapshots(canvas);
+		} else {
+			super.dispatchDraw(canvas);
+		}
+		if(mFastScroller != null) {
+			mFastScroller.draw(canvas);
+		}
 	}
 
 	@Override
 	protected int computeVerticalScrollExtent() {
-		return this.mParentHeight - (this.mFinalHeight - this.mParentHeight);
+		return this.mParentHeight;
 	}
 
 	@Override
 	protected int computeVerticalScrollOffset() {
-		return getScrollY();
+		return (int) getScrollOffset();
 	}
 
+	/**
+	 * The range covers the whole wall, not just the items we've seen so
+	 * far - items we haven't measured are estimated by the
+	 * {@link HeightEstimator}.
+	 */
 	@Override
 	protected int computeVerticalScrollRange() {
-		return this.mFinalHeight;
+		int estimatedHeight = mHeightEstimator.getEstimatedHeight() + mPaddingT + mPaddingB;
+		return (int) Math.max(estimatedHeight, getScrollOffset() + mParentHeight);
 	}
 
 	@Override
 	public boolean onTouchEvent(MotionEvent event) {
+		if (mFastScroller != null && mFastScroller.onTouchEvent(event)) {
+			return true;
+		}
 		if (getChildCount() == 0) {
             if(DEBUG) Log.d(TAG, "Child Count 0. Returning false - touch event not handled.");
 			return false;
 		}
+		// The down event comes here too if nothing under it takes it, or if
+		// intercepting it caught a fling - it has been handled once already.
+		final boolean started = mTouchStartedByIntercept
+				&& event.getAction() == MotionEvent.ACTION_DOWN;
+		mTouchStartedByIntercept = false;
+		if (!started)
+			trackVelocity(event);
 		switch (event.getAction()) {
 		case MotionEvent.ACTION_DOWN:
-			startTouch(event);
+			if (!started)
+				startTouch(event);
 			break;
 
 		case MotionEvent.ACTION_MOVE:
@@ -594,11 +3229,15 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 				startScrollIfNeeded(event);
 			}
 			if (mTouchState == TOUCH_STATE_SCROLL) {
+				// Historical samples batched into this event need no pass of
+				// their own - their deltas sum to the distance to the newest
+				// sample, which is all we add to the pending scroll.
+				mCoalescedScrollSamples += event.getHistorySize() + 1;
 				int eventY = (int) event.getY();
-				int scrollDistance = - (eventY - mTouchStartY);
-				scrollList(scrollDistance);
+				mPendingScrollDistance += - (eventY - mTouchStartY);
 				// Reset the "start" position each time.
 				mTouchStartY = eventY;
+				scheduleScrollFrame();
 			}
 			break;
 
@@ -606,6 +3245,14 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 			if (mTouchState == TOUCH_STATE_CLICK) {
 				clickChildAt((int) event.getX(), (int) event.getY());
 			}
+			int velocityY = 0;
+			if (mTouchState == TOUCH_STATE_SCROLL && mVelocityTracker != null) {
+				mVelocityTracker.computeCurrentVelocity(1000, mMaximumFlingVelocity);
+				velocityY = (int) -mVelocityTracker.getYVelocity();
+			}
+			if (Math.abs(velocityY) > mMinimumFlingVelocity) {
+				startFling(velocityY);
+			}
 			endTouch();
 			break;
 
@@ -696,7 +3343,27 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 	@Override
 	public void setAdapter(Adapter adapter) {
 		if(mAdapter != adapter) {
+			if(mAdapter != null) {
+				mAdapter.unregisterDataSetObserver(mDataSetObserver);
+				if(mAdapter instanceof SnapshotAdapter)
+					((SnapshotAdapter<?>) mAdapter).setWall(null);
+				if(mAdapter instanceof WindowedAdapter)
+					((WindowedAdapter<?>) mAdapter).setWall(null);
+			}
 			mAdapter = adapter;
+			if(mAdapter != null) {
+				mAdapter.registerDataSetObserver(mDataSetObserver);
+				if(mAdapter instanceof SnapshotAdapter)
+					((SnapshotAdapter<?>) mAdapter).setWall(this);
+				if(mAdapter instanceof WindowedAdapter)
+					((WindowedAdapter<?>) mAdapter).setWall(this);
+			}
+			mDirtyFlags = DIRTY_ALL;
+			clearScrapHeap();
+			mPlacementSnapshots.clear();
+			clearSnapshotTiles();
+			mHeightEstimator.clear();
+			mHeightEstimator.setItemSizeSource(getItemSizeSource());
 			removeAllViewsInLayout();
 			requestLayout();
 		}
@@ -714,10 +3381,17 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 	
 	@Override
 	public boolean onInterceptTouchEvent(final MotionEvent event) {
+		mTouchStartedByIntercept = false;
+		if (mFastScroller != null && mFastScroller.onInterceptTouchEvent(event)) {
+			return true;
+		}
+		trackVelocity(event);
 		switch (event.getAction()) {
 		case MotionEvent.ACTION_DOWN:
 			startTouch(event);
-			return false;
+			mTouchStartedByIntercept = true;
+			// Catching a fling carries straight on as a drag.
+			return mTouchState == TOUCH_STATE_SCROLL;
 
 		case MotionEvent.ACTION_MOVE:
 			return startScrollIfNeeded(event);
@@ -740,6 +3414,17 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 		mTouchStartX = (int) event.getX();
 		mTouchStartY = (int) event.getY();
 
+		if (mScrollState == OnScrollListener.SCROLL_STATE_SETTLING) {
+			// the wall was still moving - stop it, and treat this as the
+			// start of a drag rather than a tap on whatever was under it.
+			// It goes straight from settling to dragging - it never came to
+			// rest, so nothing that waits for idle should run.
+			haltFling();
+			mTouchState = TOUCH_STATE_SCROLL;
+			setScrollState(OnScrollListener.SCROLL_STATE_DRAGGING);
+			return;
+		}
+
 		// start checking for a long press
 		startLongPressCheck();
 
@@ -755,8 +3440,39 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 		// remove any existing check for longpress
 		removeCallbacks(mLongPressRunnable);
 
+		// don't leave any of the gesture unapplied
+		applyPendingScroll();
+
+		if (mVelocityTracker != null) {
+			mVelocityTracker.recycle();
+			mVelocityTracker = null;
+		}
+
 		// reset touch state
 		mTouchState = TOUCH_STATE_RESTING;
+		if (mScrollState == OnScrollListener.SCROLL_STATE_DRAGGING)
+			setScrollState(OnScrollListener.SCROLL_STATE_IDLE);
+	}
+
+	/**
+	 * Applies any scroll gathered from touch events that is still waiting
+	 * for the next frame.
+	 */
+	private void applyPendingScroll() {
+		if (mScrollFramePending) {
+			removeCallbacks(mScrollFrameRunnable);
+			mScrollFrameRunnable.run();
+		}
+	}
+
+	/**
+	 * Adds a touch event to the velocity tracker, starting one if needed.
+	 */
+	private void trackVelocity(final MotionEvent event) {
+		if (mVelocityTracker == null) {
+			mVelocityTracker = VelocityTracker.obtain();
+		}
+		mVelocityTracker.addMovement(event);
 	}
 	
 	/**
@@ -801,6 +3517,7 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 			// we've moved far enough for this to be a scroll
 			removeCallbacks(mLongPressRunnable);
 			mTouchState = TOUCH_STATE_SCROLL;
+			setScrollState(OnScrollListener.SCROLL_STATE_DRAGGING);
 			return true;
 		}
 		return false;
@@ -820,10 +3537,18 @@ public class AntipodalWallLayout extends AdapterView<Adapter> {
 		if (mRect == null) {
 			mRect = new Rect();
 		}
-		for (int index = 0; index < getChildCount(); index++) {
-			getChildAt(index).getHitRect(mRect);
+		if (mColumns == null) {
+			return INVALID_INDEX;
+		}
+		for (Column column : mColumns) {
+			int position = column.viewsShown.indexOfViewAt(y);
+			if (position < 0) {
+				continue;
+			}
+			View child = column.viewsShown.get(position).view;
+			child.getHitRect(mRect);
 			if (mRect.contains(x, y)) {
-				return index;
+				return indexOfChild(child);
 			}
 		}
 		return INVALID_INDEX;
@@ -3,6 +3,7 @@ package com.antipodalwall;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.view.View.BaseSavedState;
+import android.widget.AdapterView;
 
 /**
  * Saving state for the layout! Thanks, Stack Overflow:
@@ -17,9 +18,25 @@ class AntipodalWallSavedState extends BaseSavedState {
 	public Column[] mColumns;
 	public int mFinalHeight;
 	public int mScrolledPosition;
+
+	/**
+	 * What the columns and scroll position are measured from - see
+	 * AntipodalWallLayout.mCoordinateBase. Saved as it is rather than
+	 * folded into them, which could overflow an int on a long wall.
+	 */
+	public long mCoordinateBase;
 	public int mNextItemPosition;
 	public int mViewWidth;
 
+	/**
+	 * The stable id of the item at the top of the screen, if the adapter
+	 * has stable ids, and where it was - restored by finding the id again
+	 * rather than trusting adapter positions.
+	 */
+	public long mAnchorId;
+	public int mAnchorPosition = AdapterView.INVALID_POSITION;
+	public int mAnchorOffset;
+
 	public AntipodalWallSavedState(Parcelable in) {
 		super(in);
 	}
@@ -29,20 +46,27 @@ class AntipodalWallSavedState extends BaseSavedState {
 		// mNumColumns
 		mNumberOfColumns = in.readInt();
 		
-		// mColumns
-		mColumns = (Column[]) in.readParcelableArray(Column.class.getClassLoader());
+		// mColumns, if they were written
+		if(in.readInt() != 0)
+			mColumns = (Column[]) in.readParcelableArray(Column.class.getClassLoader());
 		
 		// mFinalHeight
 		mFinalHeight = in.readInt();
 		
 		// mScrolledPosition
 		mScrolledPosition = in.readInt();
+		mCoordinateBase = in.readLong();
 		
 		// mNextItemPosition
 		mNextItemPosition = in.readInt();
 		
 		// mViewWidth
 		mViewWidth = in.readInt();
+
+		// Anchor
+		mAnchorId = in.readLong();
+		mAnchorPosition = in.readInt();
+		mAnchorOffset = in.readInt();
 	}
 	
 	@Override
@@ -51,20 +75,30 @@ class AntipodalWallSavedState extends BaseSavedState {
 		// mNumColumns
 		out.writeInt(mNumberOfColumns);
 
-		// mColumns
-		out.writeParcelableArray(mColumns, 0);
+		// mColumns - not needed with an anchor, which is restored by placing
+		// everything again, and too big to parcel for nothing on long walls
+		boolean writeColumns = mColumns != null && mAnchorPosition == AdapterView.INVALID_POSITION;
+		out.writeInt(writeColumns ? 1 : 0);
+		if(writeColumns)
+			out.writeParcelableArray(mColumns, 0);
 		
 		// mFinalHeight
 		out.writeInt(mFinalHeight);
 		
 		// mScrolledPosition
 		out.writeInt(mScrolledPosition);
+		out.writeLong(mCoordinateBase);
 		
 		// mNextItemPosition
 		out.writeInt(mNextItemPosition);
 		
 		// mViewWidth
 		out.writeInt(mViewWidth);
+
+		// Anchor
+		out.writeLong(mAnchorId);
+		out.writeInt(mAnchorPosition);
+		out.writeInt(mAnchorOffset);
 	}
 
     public static final Parcelable.Creator<AntipodalWallSavedState> CREATOR =
@@ -1,6 +1,10 @@
 package com.antipodalwall;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
 
 import android.os.Parcel;
 import android.os.Parcelable;
@@ -17,28 +21,52 @@ import android.view.View.MeasureSpec;
  */
 class Column implements Parcelable {
 	int verticalSpacing, top, bottom;
-	LinkedList<ColumnView> viewsShown;
+	ColumnViewRing viewsShown;
 	LinkedList<AdapterViewDetails> topHiddenViews;
 	LinkedList<AdapterViewDetails> bottomHiddenViews;
 
+	/**
+	 * Hidden views spilled to a compact form by
+	 * {@link #compactHiddenViews(int)}, as (width, height, index) triples.
+	 * The top ones come before topHiddenViews, oldest first. The bottom ones
+	 * come after bottomHiddenViews, stored furthest first so the nearest
+	 * can be taken off the end.
+	 */
+	private int[] packedTopHidden = new int[0];
+	private int packedTopCount;
+	private int[] packedBottomHidden = new int[0];
+	private int packedBottomCount;
+
+	/** Results of {@link #updateHiddenView(int, int, int)} */
+	static final int NOT_FOUND = 0;
+	static final int HIDDEN_ABOVE = 1;
+	static final int HIDDEN_BELOW = 2;
+
+	/** Number of views to restore from the compact form at a time */
+	private static final int UNPACK_CHUNK = 32;
+
     /**
      *
      * @param verticalSpacing The amount of space (in pixels) between views.
      */
 	public Column(int verticalSpacing) {
 		this.verticalSpacing = verticalSpacing;
-		viewsShown = new LinkedList<ColumnView>();
+		viewsShown = new ColumnViewRing();
 		topHiddenViews = new LinkedList<AdapterViewDetails>();
 		bottomHiddenViews = new LinkedList<AdapterViewDetails>();
 	}
 	
 	private Column(Parcel in) {
-		Column c = new Column(in.readInt());
-		c.top = in.readInt();
-		c.bottom = in.readInt();
-		in.readList(c.viewsShown, ColumnView.class.getClassLoader());
-		in.readList(c.topHiddenViews, AdapterViewDetails.class.getClassLoader());
-		in.readList(c.bottomHiddenViews, AdapterViewDetails.class.getClassLoader());
+		this(in.readInt());
+		top = in.readInt();
+		bottom = in.readInt();
+		ArrayList<ColumnView> shown = new ArrayList<ColumnView>();
+		in.readList(shown, ColumnView.class.getClassLoader());
+		for(ColumnView cv : shown) {
+			viewsShown.addLast(cv);
+		}
+		in.readList(topHiddenViews, AdapterViewDetails.class.getClassLoader());
+		in.readList(bottomHiddenViews, AdapterViewDetails.class.getClassLoader());
 	}
 	
 	/***
@@ -142,7 +170,7 @@ class Column implements Parcelable {
 	public void addTop(ColumnView v) {
 		top -= (v.view.getMeasuredHeight() + verticalSpacing);
 		viewsShown.addFirst(v);
-		if(!topHiddenViews.isEmpty())
+		if(!getTopHiddenViews().isEmpty())
 			topHiddenViews.removeLast();
 	}
 	
@@ -155,17 +183,362 @@ class Column implements Parcelable {
 	public void addBottom(ColumnView v) {
 		bottom += v.view.getMeasuredHeight() + verticalSpacing;
 		viewsShown.addLast(v);
-		if(!bottomHiddenViews.isEmpty())
+		if(!getBottomHiddenViews().isEmpty())
 			bottomHiddenViews.removeFirst();
 	}
 	
+	/***
+	 * Moves a view past the bottom of this column without ever showing it,
+	 * as if it had been added with {@link #addBottom(ColumnView)} and then
+	 * popped off with {@link #popTopView()}. Only valid while there are no
+	 * views shown in this column.
+	 *
+	 * @param details
+	 *            Details of the view being skipped.
+	 * @param height
+	 *            The height the view would have in this column.
+	 */
+	public void skipBottom(AdapterViewDetails details, int height) {
+		bottom += height + verticalSpacing;
+		top = bottom;
+		topHiddenViews.addLast(details);
+		if(!getBottomHiddenViews().isEmpty())
+			bottomHiddenViews.removeFirst();
+	}
+
+	/***
+	 * Moves the last of the top hidden views back to the bottom hidden
+	 * views without ever showing it. The reverse of
+	 * {@link #skipBottom(AdapterViewDetails, int)}. Only valid while there
+	 * are no views shown in this column.
+	 *
+	 * @param height
+	 *            The height the view would have in this column.
+	 */
+	public void skipTop(int height) {
+		top -= (height + verticalSpacing);
+		bottom = top;
+		bottomHiddenViews.addFirst(getTopHiddenViews().removeLast());
+	}
+
+	/***
+	 * Returns the views hidden above this column, oldest first. If the
+	 * nearest of them have been compacted, some are restored first.
+	 */
 	public LinkedList<AdapterViewDetails> getTopHiddenViews() {
+		if(topHiddenViews.isEmpty() && packedTopCount > 0)
+			unpackTop(UNPACK_CHUNK);
 		return topHiddenViews;
 	}
-	
+
+	/***
+	 * Returns the views hidden below this column, nearest first. If the
+	 * nearest of them have been compacted, some are restored first.
+	 */
 	public LinkedList<AdapterViewDetails> getBottomHiddenViews() {
+		if(bottomHiddenViews.isEmpty() && packedBottomCount > 0)
+			unpackBottom(UNPACK_CHUNK);
 		return bottomHiddenViews;
 	}
+
+	/***
+	 * Spills hidden views to a compact form, keeping only the ones nearest
+	 * the views shown as objects. Those spilled are restored a chunk at a
+	 * time as they are needed again.
+	 *
+	 * @param keep
+	 *            The number of hidden views to keep as objects above and
+	 *            below this column.
+	 */
+	public void compactHiddenViews(int keep) {
+		int spill = topHiddenViews.size() - keep;
+		if(spill > 0) {
+			packedTopHidden = ensureCapacity(packedTopHidden, packedTopCount + spill);
+			for(int i = 0; i < spill; i++) {
+				pack(packedTopHidden, packedTopCount++, topHiddenViews.removeFirst());
+			}
+		}
+		spill = bottomHiddenViews.size() - keep;
+		if(spill > 0) {
+			packedBottomHidden = ensureCapacity(packedBottomHidden, packedBottomCount + spill);
+			for(int i = 0; i < spill; i++) {
+				pack(packedBottomHidden, packedBottomCount++, bottomHiddenViews.removeLast());
+			}
+		}
+	}
+
+	/***
+	 * Restores every compacted hidden view, for code that needs to walk all
+	 * of them.
+	 */
+	public void expandHiddenViews() {
+		unpackTop(packedTopCount);
+		unpackBottom(packedBottomCount);
+		packedTopHidden = new int[0];
+		packedBottomHidden = new int[0];
+	}
+
+	/***
+	 * Finds a view shown in this column.
+	 *
+	 * @param adapterIndex
+	 *            The view's index into the adapter.
+	 * @return The view, or null if it isn't shown in this column.
+	 */
+	public ColumnView findShownView(int adapterIndex) {
+		// Items are placed in adapter order, so indexes go up down the column.
+		int low = 0;
+		int high = viewsShown.size() - 1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			ColumnView cv = viewsShown.get(mid);
+			if(cv.details.index == adapterIndex)
+				return cv;
+			if(cv.details.index < adapterIndex) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return null;
+	}
+
+	/***
+	 * Updates the original size of a view hidden above or below this
+	 * column.
+	 *
+	 * @param adapterIndex
+	 *            The view's index into the adapter.
+	 * @return HIDDEN_ABOVE or HIDDEN_BELOW depending on where the view was
+	 *         found, or NOT_FOUND if it isn't hidden in this column.
+	 */
+	public int updateHiddenView(int adapterIndex, int width, int height) {
+		if(updateDetails(topHiddenViews, adapterIndex, width, height)
+				|| updatePacked(packedTopHidden, packedTopCount, adapterIndex, width, height))
+			return HIDDEN_ABOVE;
+		if(updateDetails(bottomHiddenViews, adapterIndex, width, height)
+				|| updatePacked(packedBottomHidden, packedBottomCount, adapterIndex, width, height))
+			return HIDDEN_BELOW;
+		return NOT_FOUND;
+	}
+
+	/***
+	 * Moves views in this column up or down after one of them (or one
+	 * hidden above them) has changed height. Views above the one that
+	 * changed, and other columns, are left alone.
+	 *
+	 * @param changed
+	 *            The shown view that changed height - views after it are
+	 *            moved. If null, the change was above every shown view, so
+	 *            they all move, along with the top of the column.
+	 * @param delta
+	 *            The change in height.
+	 */
+	public void shiftViewsBelow(ColumnView changed, int delta) {
+		if(delta == 0)
+			return;
+		int first = 0;
+		if(changed == null) {
+			top += delta;
+		} else {
+			int changedPosition = viewsShown.indexOf(changed);
+			first = changedPosition < 0 ? viewsShown.size() : changedPosition + 1;
+		}
+		for(int i = first; i < viewsShown.size(); i++) {
+			viewsShown.get(i).view.offsetTopAndBottom(delta);
+		}
+		bottom += delta;
+	}
+
+	private static boolean updateDetails(LinkedList<AdapterViewDetails> list,
+			int adapterIndex, int width, int height) {
+		for(AdapterViewDetails details : list) {
+			if(details.index == adapterIndex) {
+				details.width = width;
+				details.height = height;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean updatePacked(int[] packed, int count, int adapterIndex,
+			int width, int height) {
+		for(int i = 0; i < count; i++) {
+			if(packed[i * 3 + 2] == adapterIndex) {
+				packed[i * 3] = width;
+				packed[i * 3 + 1] = height;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/***
+	 * Forgets every view from an adapter index onwards, as if they had
+	 * never been placed in this column, so that they can be placed again.
+	 * Items go down a column in adapter order, so only the end of the
+	 * column is touched.
+	 *
+	 * @param adapterIndex
+	 *            Index of the first item to forget.
+	 * @param heights
+	 *            Heights of the items at the current column width.
+	 * @param removed
+	 *            Shown views that are forgotten are added to this list -
+	 *            they still need removing from the layout.
+	 * @return False if the height of a forgotten hidden view wasn't known,
+	 *         so the top of this column is no longer right.
+	 */
+	public boolean truncateFrom(int adapterIndex, HeightEstimator heights, List<ColumnView> removed) {
+		// Below: everything past the last shown view, nearest first.
+		unpackBottom(packedBottomCount);
+		packedBottomHidden = new int[0];
+		while(!bottomHiddenViews.isEmpty() && bottomHiddenViews.getLast().index >= adapterIndex) {
+			bottomHiddenViews.removeLast();
+		}
+		while(!viewsShown.isEmpty() && viewsShown.getLast().details.index >= adapterIndex) {
+			ColumnView cv = viewsShown.removeLast();
+			bottom -= cv.view.getMeasuredHeight() + verticalSpacing;
+			removed.add(cv);
+		}
+		if(!viewsShown.isEmpty())
+			return true;
+		// Nothing shown is left, so the top moves up past forgotten views
+		// hidden above.
+		boolean known = true;
+		while(!getTopHiddenViews().isEmpty()
+				&& topHiddenViews.getLast().index >= adapterIndex) {
+			int h = heights.getItemHeight(topHiddenViews.removeLast().index);
+			if(h < 0)
+				known = false;
+			top -= h + verticalSpacing;
+		}
+		bottom = top;
+		return known;
+	}
+
+	/***
+	 * @return The number of views hidden above this column, compacted or
+	 *         not.
+	 */
+	public int getTopHiddenCount() {
+		return packedTopCount + topHiddenViews.size();
+	}
+
+	/***
+	 * @return The number of views hidden below this column, compacted or
+	 *         not.
+	 */
+	public int getBottomHiddenCount() {
+		return packedBottomCount + bottomHiddenViews.size();
+	}
+
+	/***
+	 * Restores top and bottom from a {@link PlacementSnapshot} taken at
+	 * this column width, and re-measures the views shown to their exact
+	 * heights. Only the views that have moved between hidden and shown
+	 * since the snapshot was taken are looked at - not every hidden view.
+	 *
+	 * @param snapshotTop
+	 *            The value of {@link #getTop()} when the snapshot was taken.
+	 * @param snapshotTopHiddenCount
+	 *            The number of views hidden above this column then.
+	 * @param heights
+	 *            Item heights at this column width.
+	 * @param columnWidth
+	 *            The width of the column.
+	 * @return False if the views that moved couldn't be found, in which
+	 *         case nothing has been changed.
+	 */
+	public boolean restorePlacement(int snapshotTop, int snapshotTopHiddenCount,
+			HeightEstimator heights, float columnWidth) {
+		int newTop = snapshotTop;
+		int moved = getTopHiddenCount() - snapshotTopHiddenCount;
+		if(moved > 0) {
+			// Views that were shown (or below) then are hidden above now.
+			if(moved > topHiddenViews.size())
+				return false;
+			ListIterator<AdapterViewDetails> it = topHiddenViews.listIterator(topHiddenViews.size());
+			for(int i = 0; i < moved; i++) {
+				int h = heights.getItemHeight(it.previous().index);
+				if(h < 0)
+					return false;
+				newTop += h + verticalSpacing;
+			}
+		} else if(moved < 0) {
+			// Views that were hidden above then are shown (or below) now.
+			Iterator<ColumnView> shown = viewsShown.iterator();
+			Iterator<AdapterViewDetails> below = bottomHiddenViews.iterator();
+			for(int i = 0; i < -moved; i++) {
+				int index;
+				if(shown.hasNext()) {
+					index = shown.next().details.index;
+				} else if(below.hasNext()) {
+					index = below.next().index;
+				} else {
+					return false;
+				}
+				int h = heights.getItemHeight(index);
+				if(h < 0)
+					return false;
+				newTop -= h + verticalSpacing;
+			}
+		}
+		for(ColumnView cv : viewsShown) {
+			if(heights.getItemHeight(cv.details.index) < 0)
+				return false;
+		}
+
+		int newBottom = newTop;
+		int widthSpec = MeasureSpec.makeMeasureSpec((int)columnWidth, MeasureSpec.EXACTLY);
+		for(ColumnView cv : viewsShown) {
+			int h = heights.getItemHeight(cv.details.index);
+			newBottom += h + verticalSpacing;
+			cv.view.measure(widthSpec, MeasureSpec.makeMeasureSpec(h, MeasureSpec.EXACTLY));
+		}
+		top = newTop;
+		bottom = newBottom;
+		return true;
+	}
+
+	/***
+	 * @return The number of hidden views currently held in compact form.
+	 */
+	public int getCompactedHiddenViewCount() {
+		return packedTopCount + packedBottomCount;
+	}
+
+	private void unpackTop(int count) {
+		for(int i = 0; i < count && packedTopCount > 0; i++) {
+			topHiddenViews.addFirst(unpack(packedTopHidden, --packedTopCount));
+		}
+	}
+
+	private void unpackBottom(int count) {
+		for(int i = 0; i < count && packedBottomCount > 0; i++) {
+			bottomHiddenViews.addLast(unpack(packedBottomHidden, --packedBottomCount));
+		}
+	}
+
+	private static void pack(int[] packed, int position, AdapterViewDetails details) {
+		packed[position * 3] = details.width;
+		packed[position * 3 + 1] = details.height;
+		packed[position * 3 + 2] = details.index;
+	}
+
+	private static AdapterViewDetails unpack(int[] packed, int position) {
+		return new AdapterViewDetails(packed[position * 3], packed[position * 3 + 1],
+				packed[position * 3 + 2]);
+	}
+
+	private static int[] ensureCapacity(int[] packed, int count) {
+		if(packed.length >= count * 3)
+			return packed;
+		int[] larger = new int[Math.max(count * 3, packed.length * 2)];
+		System.arraycopy(packed, 0, larger, 0, packed.length);
+		return larger;
+	}
 	
 	@Override
 	public int describeContents() {
@@ -174,10 +547,11 @@ class Column implements Parcelable {
 
 	@Override
 	public void writeToParcel(Parcel dest, int flags) {
+		expandHiddenViews();
 		dest.writeInt(verticalSpacing);
 		dest.writeInt(top);
 		dest.writeInt(bottom);
-		dest.writeList(viewsShown);
+		dest.writeList(viewsShown.toList());
 		dest.writeList(topHiddenViews);
 		dest.writeList(bottomHiddenViews);
 	}
@@ -200,6 +574,7 @@ class Column implements Parcelable {
 	 * @param columnWidth The width of the column.
 	 */
 	public void scaleBy(float columnWidth) {
+		expandHiddenViews();
 		int topWithSpacing = 0;
 		for(AdapterViewDetails vs : topHiddenViews) {
 			double scaleRatio = vs.width / columnWidth;
@@ -21,7 +21,22 @@ class ColumnView implements Parcelable {
      * Details of the original View from the adapter.
      */
 	public final AdapterViewDetails details;
-	
+
+	/**
+	 * True while the view is detached from the layout but not removed from
+	 * it, so it needs re-attaching rather than adding.
+	 */
+	boolean detached;
+
+	/** The adapter's view type for the view, so it's recycled with its own kind */
+	int viewType;
+
+	/**
+	 * True if the view is a placeholder holding the item's place until
+	 * there's time to bind it.
+	 */
+	boolean placeholder;
+
 	/***
 	 * 
 	 * @param details
@@ -0,0 +1,188 @@
+package com.antipodalwall;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/***
+ * The views shown in a {@link Column}, top first, in an array-backed ring
+ * buffer. Adding and removing at either end and getting a view by its
+ * position are all O(1), and nothing is allocated per view once the buffer
+ * has grown to fit the screen.
+ *
+ * Views are laid out top to bottom in order, so a view can be found by its
+ * offset with a binary search.
+ */
+class ColumnViewRing implements Iterable<ColumnView> {
+	private static final int INITIAL_CAPACITY = 16;
+
+	private ColumnView[] mViews = new ColumnView[INITIAL_CAPACITY];
+
+	/** Array index of the top view */
+	private int mHead;
+	private int mSize;
+
+	public int size() {
+		return mSize;
+	}
+
+	public boolean isEmpty() {
+		return mSize == 0;
+	}
+
+	/**
+	 * @param position 0 for the top view, size() - 1 for the bottom one.
+	 */
+	public ColumnView get(int position) {
+		if(position < 0 || position >= mSize)
+			throw new IndexOutOfBoundsException("Position " + position + ", size " + mSize);
+		return mViews[(mHead + position) & (mViews.length - 1)];
+	}
+
+	public ColumnView getFirst() {
+		if(mSize == 0)
+			throw new NoSuchElementException();
+		return mViews[mHead];
+	}
+
+	public ColumnView getLast() {
+		if(mSize == 0)
+			throw new NoSuchElementException();
+		return mViews[(mHead + mSize - 1) & (mViews.length - 1)];
+	}
+
+	/**
+	 * Replaces the view at a position, e.g. a placeholder with the real
+	 * view for its item.
+	 */
+	public void set(int position, ColumnView cv) {
+		if(position < 0 || position >= mSize)
+			throw new IndexOutOfBoundsException("Position " + position + ", size " + mSize);
+		mViews[(mHead + position) & (mViews.length - 1)] = cv;
+	}
+
+	public void addFirst(ColumnView cv) {
+		ensureCapacity();
+		mHead = (mHead - 1) & (mViews.length - 1);
+		mViews[mHead] = cv;
+		mSize++;
+	}
+
+	public void addLast(ColumnView cv) {
+		ensureCapacity();
+		mViews[(mHead + mSize) & (mViews.length - 1)] = cv;
+		mSize++;
+	}
+
+	public ColumnView removeFirst() {
+		ColumnView cv = getFirst();
+		mViews[mHead] = null;
+		mHead = (mHead + 1) & (mViews.length - 1);
+		mSize--;
+		return cv;
+	}
+
+	public ColumnView removeLast() {
+		ColumnView cv = getLast();
+		mViews[(mHead + mSize - 1) & (mViews.length - 1)] = null;
+		mSize--;
+		return cv;
+	}
+
+	public void clear() {
+		for(int i = 0; i < mSize; i++) {
+			mViews[(mHead + i) & (mViews.length - 1)] = null;
+		}
+		mHead = 0;
+		mSize = 0;
+	}
+
+	/**
+	 * Finds the view covering a vertical offset, by binary search on the
+	 * tops of the views. Only valid once the views have been laid out.
+	 *
+	 * @param y
+	 *            Offset in the layout's coordinates.
+	 * @return The position of the last view whose top is at or above y, or
+	 *         -1 if y is above every view (or there are none). The view
+	 *         found may end above y if y falls in the spacing below it or
+	 *         past the bottom of the column.
+	 */
+	public int indexOfViewAt(int y) {
+		int low = 0;
+		int high = mSize - 1;
+		int found = -1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			if(get(mid).view.getTop() <= y) {
+				found = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * @return The position of a view, or -1 if it isn't shown. Found by
+	 *         binary search on its top, so only valid once the views have
+	 *         been laid out.
+	 */
+	public int indexOf(ColumnView cv) {
+		int position = indexOfViewAt(cv.view.getTop());
+		// Views with no height share a top - walk back to the right one.
+		while(position >= 0 && get(position) != cv
+				&& get(position).view.getTop() == cv.view.getTop()) {
+			position--;
+		}
+		return position >= 0 && get(position) == cv ? position : -1;
+	}
+
+	/**
+	 * @return A copy of the views, top first, e.g. for parceling.
+	 */
+	public ArrayList<ColumnView> toList() {
+		ArrayList<ColumnView> list = new ArrayList<ColumnView>(mSize);
+		for(int i = 0; i < mSize; i++) {
+			list.add(get(i));
+		}
+		return list;
+	}
+
+	/**
+	 * Iterates from the top view down. The ring mustn't be changed while
+	 * iterating.
+	 */
+	public Iterator<ColumnView> iterator() {
+		return new Iterator<ColumnView>() {
+			private int mPosition;
+
+			public boolean hasNext() {
+				return mPosition < mSize;
+			}
+
+			public ColumnView next() {
+				if(mPosition >= mSize)
+					throw new NoSuchElementException();
+				return get(mPosition++);
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/** Doubles the array when full. The length is always a power of two. */
+	private void ensureCapacity() {
+		if(mSize < mViews.length)
+			return;
+		ColumnView[] larger = new ColumnView[mViews.length * 2];
+		for(int i = 0; i < mSize; i++) {
+			larger[i] = mViews[(mHead + i) & (mViews.length - 1)];
+		}
+		mViews = larger;
+		mHead = 0;
+	}
+}
@@ -0,0 +1,152 @@
+package com.antipodalwall;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.view.MotionEvent;
+
+/**
+ * A draggable thumb drawn along the right edge of an
+ * {@link AntipodalWallLayout}. Dragging the thumb converts its position into
+ * an adapter position (using the layout's {@link HeightEstimator}) and
+ * jumps the wall there.
+ */
+class FastScroller {
+	/** Width of the drawn thumb, in dp */
+	private static final int THUMB_WIDTH_DP = 6;
+
+	/** Minimum height of the drawn thumb, in dp */
+	private static final int MIN_THUMB_HEIGHT_DP = 48;
+
+	/** Width of the area along the right edge that picks up the thumb, in dp */
+	private static final int TOUCH_WIDTH_DP = 32;
+
+	private final AntipodalWallLayout mWall;
+	private final Paint mThumbPaint;
+	private final RectF mThumbRect = new RectF();
+	private final int mThumbWidth;
+	private final int mMinThumbHeight;
+	private final int mTouchWidth;
+
+	/** True while the user is dragging the thumb */
+	private boolean mDragging;
+
+	/** Distance between the touch point and the top of the thumb */
+	private float mGrabOffset;
+
+	public FastScroller(AntipodalWallLayout wall) {
+		mWall = wall;
+		float density = wall.getResources().getDisplayMetrics().density;
+		mThumbWidth = (int) (THUMB_WIDTH_DP * density);
+		mMinThumbHeight = (int) (MIN_THUMB_HEIGHT_DP * density);
+		mTouchWidth = (int) (TOUCH_WIDTH_DP * density);
+		mThumbPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		mThumbPaint.setColor(Color.GRAY);
+	}
+
+	/**
+	 * @return True if the user is currently dragging the thumb.
+	 */
+	public boolean isDragging() {
+		return mDragging;
+	}
+
+	/**
+	 * Draws the thumb. The canvas is expected to be translated by the
+	 * layout's scroll position, as it is in dispatchDraw.
+	 */
+	public void draw(Canvas canvas) {
+		if(!updateThumbRect())
+			return;
+		float radius = mThumbWidth / 2f;
+		mThumbRect.top += mWall.getScrollY();
+		mThumbRect.bottom += mWall.getScrollY();
+		canvas.drawRoundRect(mThumbRect, radius, radius, mThumbPaint);
+	}
+
+	/**
+	 * @return True if the event landed on the thumb, so the layout should
+	 *         take over the gesture.
+	 */
+	public boolean onInterceptTouchEvent(MotionEvent event) {
+		return event.getAction() == MotionEvent.ACTION_DOWN && isOnThumb(event.getX(), event.getY());
+	}
+
+	/**
+	 * @return True if the event was consumed by the thumb.
+	 */
+	public boolean onTouchEvent(MotionEvent event) {
+		switch (event.getAction()) {
+		case MotionEvent.ACTION_DOWN:
+			if(isOnThumb(event.getX(), event.getY())) {
+				mDragging = true;
+				mGrabOffset = event.getY() - mThumbRect.top;
+				return true;
+			}
+			return false;
+
+		case MotionEvent.ACTION_MOVE:
+			if(mDragging) {
+				scrollToThumbPosition(event.getY() - mGrabOffset);
+				return true;
+			}
+			return false;
+
+		default:
+			if(mDragging) {
+				mDragging = false;
+				mWall.invalidate();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	private boolean isOnThumb(float x, float y) {
+		if(!updateThumbRect())
+			return false;
+		return x >= mWall.getWidth() - mTouchWidth
+				&& y >= mThumbRect.top && y <= mThumbRect.bottom;
+	}
+
+	/**
+	 * Moves the wall so that the top of the thumb is at the given position.
+	 *
+	 * @param thumbTop Top of the thumb, relative to the visible area.
+	 */
+	private void scrollToThumbPosition(float thumbTop) {
+		int viewport = mWall.mParentHeight;
+		float track = viewport - mThumbRect.height();
+		if(track <= 0)
+			return;
+		float fraction = Math.max(0f, Math.min(1f, thumbTop / track));
+		HeightEstimator estimator = mWall.getHeightEstimator();
+		int scrollable = Math.max(0, estimator.getEstimatedHeight() - viewport);
+		int position = estimator.getPositionForOffset((int) (fraction * scrollable));
+		mWall.fastScrollToPosition(position);
+	}
+
+	/**
+	 * Works out where the thumb should be drawn, relative to the visible
+	 * area.
+	 *
+	 * @return False if there's nothing to scroll, so no thumb to show.
+	 */
+	private boolean updateThumbRect() {
+		int viewport = mWall.mParentHeight;
+		int range = mWall.computeVerticalScrollRange();
+		int extent = mWall.computeVerticalScrollExtent();
+		if(viewport <= 0 || range <= extent)
+			return false;
+		int thumbHeight = Math.max(mMinThumbHeight, (int) ((long) viewport * extent / range));
+		if(thumbHeight >= viewport)
+			return false;
+		float fraction = (float) mWall.computeVerticalScrollOffset() / (range - extent);
+		fraction = Math.max(0f, Math.min(1f, fraction));
+		float top = fraction * (viewport - thumbHeight);
+		int right = mWall.getWidth();
+		mThumbRect.set(right - mThumbWidth, top, right, top + thumbHeight);
+		return true;
+	}
+}
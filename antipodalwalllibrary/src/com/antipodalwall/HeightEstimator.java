@@ -0,0 +1,385 @@
+package com.antipodalwall;
+
+/**
+ * Models the full height of the wall before every item has been measured.
+ *
+ * Items whose height is known (because they have been measured, or because
+ * an {@link ItemSizeSource} told us) contribute their exact height. Every
+ * other item is assumed to be the running average height of the known
+ * items. Heights are kept in a Fenwick tree, so converting between an
+ * adapter position and a vertical offset is O(log n) in either direction,
+ * which keeps scrubbing through very long walls cheap.
+ *
+ * Offsets assume items are spread evenly across the columns, which is
+ * what shortest-column placement tends towards.
+ */
+class HeightEstimator {
+	/** Marks a height we don't know yet */
+	private static final int UNKNOWN = -1;
+
+	private int mNumberOfColumns = 1;
+	private int mVerticalSpacing;
+	private float mColumnWidth;
+	private ItemSizeSource mSizeSource;
+
+	/** Number of items in the adapter */
+	private int mCount;
+
+	/** Height of each item at the current column width, or UNKNOWN */
+	private int[] mHeights = new int[0];
+
+	/** Original (unscaled) size of each item, 0 if we don't have it */
+	private int[] mOriginalWidths = new int[0];
+	private int[] mOriginalHeights = new int[0];
+
+	/** Fenwick tree over known heights (including vertical spacing) */
+	private long[] mHeightTree = new long[1];
+
+	/** Fenwick tree over the number of known heights */
+	private int[] mKnownTree = new int[1];
+
+	private long mKnownHeightTotal;
+	private int mKnownCount;
+
+	/**
+	 * Updates the column configuration. If the column width has changed all
+	 * known heights are rescaled to the new width.
+	 *
+	 * @param numberOfColumns Number of columns in the layout.
+	 * @param columnWidth Width of each column.
+	 * @param verticalSpacing Space between views in a column.
+	 */
+	public void setColumnConfig(int numberOfColumns, float columnWidth, int verticalSpacing) {
+		if(numberOfColumns == mNumberOfColumns && columnWidth == mColumnWidth
+				&& verticalSpacing == mVerticalSpacing)
+			return;
+		float oldColumnWidth = mColumnWidth;
+		mNumberOfColumns = numberOfColumns < 1 ? 1 : numberOfColumns;
+		mColumnWidth = columnWidth;
+		mVerticalSpacing = verticalSpacing;
+		for(int i = 0; i < mCount; i++) {
+			if(mOriginalWidths[i] > 0 && mOriginalHeights[i] > 0) {
+				mHeights[i] = scale(mOriginalWidths[i], mOriginalHeights[i]);
+			} else if(mHeights[i] != UNKNOWN && oldColumnWidth > 0) {
+				mHeights[i] = (int) (mHeights[i] * (columnWidth / oldColumnWidth));
+			}
+		}
+		rebuild();
+	}
+
+	/**
+	 * Sets the source to ask for sizes of items that haven't been measured.
+	 */
+	public void setItemSizeSource(ItemSizeSource source) {
+		mSizeSource = source;
+		for(int i = 0; i < mCount; i++) {
+			readFromSource(i);
+		}
+		rebuild();
+	}
+
+	/**
+	 * Updates the number of items in the adapter. Items past the new count
+	 * are forgotten, new items are read from the {@link ItemSizeSource} if
+	 * there is one.
+	 */
+	public void setItemCount(int count) {
+		if(count == mCount)
+			return;
+		int oldCount = mCount;
+		resize(count);
+		for(int i = oldCount; i < count; i++) {
+			readFromSource(i);
+		}
+		rebuild();
+	}
+
+	/**
+	 * Makes room for items inserted into the adapter, moving what we know
+	 * about the items after them along.
+	 *
+	 * @param position Index of the first inserted item.
+	 * @param count Number of items inserted.
+	 */
+	public void insertItems(int position, int count) {
+		if(count <= 0)
+			return;
+		if(position > mCount)
+			position = mCount;
+		int oldCount = mCount;
+		resize(oldCount + count);
+		int tail = oldCount - position;
+		System.arraycopy(mHeights, position, mHeights, position + count, tail);
+		System.arraycopy(mOriginalWidths, position, mOriginalWidths, position + count, tail);
+		System.arraycopy(mOriginalHeights, position, mOriginalHeights, position + count, tail);
+		for(int i = position; i < position + count; i++) {
+			mHeights[i] = UNKNOWN;
+			mOriginalWidths[i] = 0;
+			mOriginalHeights[i] = 0;
+			readFromSource(i);
+		}
+		rebuild();
+	}
+
+	/**
+	 * Forgets items removed from the adapter, moving what we know about the
+	 * items after them back.
+	 *
+	 * @param position Index of the first removed item.
+	 * @param count Number of items removed.
+	 */
+	public void removeItems(int position, int count) {
+		if(position >= mCount || count <= 0)
+			return;
+		if(position + count > mCount)
+			count = mCount - position;
+		int tail = mCount - position - count;
+		System.arraycopy(mHeights, position + count, mHeights, position, tail);
+		System.arraycopy(mOriginalWidths, position + count, mOriginalWidths, position, tail);
+		System.arraycopy(mOriginalHeights, position + count, mOriginalHeights, position, tail);
+		resize(mCount - count);
+		rebuild();
+	}
+
+	/**
+	 * Moves what we know about an item that has moved in the adapter.
+	 */
+	public void moveItem(int from, int to) {
+		if(from == to || from < 0 || to < 0 || from >= mCount || to >= mCount)
+			return;
+		int height = mHeights[from];
+		int width = mOriginalWidths[from];
+		int originalHeight = mOriginalHeights[from];
+		if(from < to) {
+			System.arraycopy(mHeights, from + 1, mHeights, from, to - from);
+			System.arraycopy(mOriginalWidths, from + 1, mOriginalWidths, from, to - from);
+			System.arraycopy(mOriginalHeights, from + 1, mOriginalHeights, from, to - from);
+		} else {
+			System.arraycopy(mHeights, to, mHeights, to + 1, from - to);
+			System.arraycopy(mOriginalWidths, to, mOriginalWidths, to + 1, from - to);
+			System.arraycopy(mOriginalHeights, to, mOriginalHeights, to + 1, from - to);
+		}
+		mHeights[to] = height;
+		mOriginalWidths[to] = width;
+		mOriginalHeights[to] = originalHeight;
+		rebuild();
+	}
+
+	/**
+	 * Forgets everything we know about item heights.
+	 */
+	public void clear() {
+		mCount = 0;
+		mHeights = new int[0];
+		mOriginalWidths = new int[0];
+		mOriginalHeights = new int[0];
+		rebuild();
+	}
+
+	/**
+	 * Records the size of an item.
+	 *
+	 * @param position Index into the adapter.
+	 * @param originalWidth Width the adapter gave the view, or 0.
+	 * @param originalHeight Height the adapter gave the view, or 0.
+	 * @param measuredHeight Height of the view once measured to fit a column.
+	 */
+	public void setItemSize(int position, int originalWidth, int originalHeight, int measuredHeight) {
+		if(position >= mCount)
+			setItemCount(position + 1);
+		mOriginalWidths[position] = originalWidth;
+		mOriginalHeights[position] = originalHeight;
+		updateHeight(position, measuredHeight);
+	}
+
+	/**
+	 * @return The height of the item at this position at the current column
+	 *         width, or -1 if it isn't known.
+	 */
+	public int getItemHeight(int position) {
+		if(position < 0 || position >= mCount)
+			return UNKNOWN;
+		return mHeights[position];
+	}
+
+	public int getOriginalWidth(int position) {
+		return mOriginalWidths[position];
+	}
+
+	public int getOriginalHeight(int position) {
+		return mOriginalHeights[position];
+	}
+
+	/**
+	 * @return The average height of a known item (spacing included). If we
+	 *         don't know any yet, assume items are square.
+	 */
+	public float getAverageItemHeight() {
+		if(mKnownCount == 0)
+			return mColumnWidth + mVerticalSpacing;
+		return (float) mKnownHeightTotal / mKnownCount;
+	}
+
+	/**
+	 * @return The estimated height of the whole wall, excluding padding.
+	 */
+	public int getEstimatedHeight() {
+		return getOffsetForPosition(mCount);
+	}
+
+	/**
+	 * Estimates the offset of the item at the given position. O(log n).
+	 *
+	 * @param position Index into the adapter.
+	 * @return The estimated number of pixels between the top of the wall and
+	 *         the top of the item.
+	 */
+	public int getOffsetForPosition(int position) {
+		if(position > mCount)
+			position = mCount;
+		long height = 0;
+		int known = 0;
+		for(int i = position; i > 0; i -= (i & -i)) {
+			height += mHeightTree[i];
+			known += mKnownTree[i];
+		}
+		double total = height + (position - known) * (double) getAverageItemHeight();
+		return (int) (total / mNumberOfColumns);
+	}
+
+	/**
+	 * Finds the position of the item that is estimated to be at the given
+	 * offset. O(log n).
+	 *
+	 * @param offset Number of pixels from the top of the wall.
+	 * @return Index into the adapter, or 0 if there are no items.
+	 */
+	public int getPositionForOffset(int offset) {
+		if(mCount == 0 || offset <= 0)
+			return 0;
+		double target = (double) offset * mNumberOfColumns;
+		float average = getAverageItemHeight();
+		int position = 0;
+		double accumulated = 0;
+		for(int step = Integer.highestOneBit(mCount); step > 0; step >>= 1) {
+			int next = position + step;
+			if(next > mCount)
+				continue;
+			// Tree node 'next' covers exactly 'step' items here.
+			double nodeHeight = mHeightTree[next] + (step - mKnownTree[next]) * (double) average;
+			if(accumulated + nodeHeight <= target) {
+				position = next;
+				accumulated += nodeHeight;
+			}
+		}
+		return position < mCount ? position : mCount - 1;
+	}
+
+	/**
+	 * @return A copy of the height of every item at the current column
+	 *         width, -1 where unknown.
+	 */
+	public int[] copyHeights() {
+		int[] heights = new int[mCount];
+		System.arraycopy(mHeights, 0, heights, 0, mCount);
+		return heights;
+	}
+
+	/**
+	 * Replaces known heights with exact ones from an earlier
+	 * {@link #copyHeights()} at the same column width, undoing any rounding
+	 * from rescaling in between.
+	 *
+	 * @param heights Heights by adapter index, -1 where unknown.
+	 */
+	public void setHeights(int[] heights) {
+		int count = Math.min(heights.length, mCount);
+		for(int i = 0; i < count; i++) {
+			if(heights[i] != UNKNOWN)
+				mHeights[i] = heights[i];
+		}
+		rebuild();
+	}
+
+	/**
+	 * @return Approximate number of bytes used by the height model.
+	 */
+	public long getFootprintBytes() {
+		// Three int arrays per item, plus a long and an int per tree node.
+		return mCount * 12L + (mCount + 1) * 12L;
+	}
+
+	private void readFromSource(int position) {
+		if(mSizeSource == null || mHeights[position] != UNKNOWN
+				|| !mSizeSource.hasItemSize(position))
+			return;
+		int w = mSizeSource.getItemWidth(position);
+		int h = mSizeSource.getItemHeight(position);
+		if(w > 0 && h > 0) {
+			mOriginalWidths[position] = w;
+			mOriginalHeights[position] = h;
+			mHeights[position] = scale(w, h);
+		}
+	}
+
+	private int scale(int originalWidth, int originalHeight) {
+		if(mColumnWidth <= 0)
+			return originalHeight;
+		// Same as AntipodalWallLayout.measureChild(...)
+		double scaleRatio = originalWidth / mColumnWidth;
+		return (int) (originalHeight / scaleRatio);
+	}
+
+	private void updateHeight(int position, int height) {
+		int old = mHeights[position];
+		mHeights[position] = height;
+		long heightDelta = (height == UNKNOWN ? 0 : height + mVerticalSpacing)
+				- (old == UNKNOWN ? 0 : old + mVerticalSpacing);
+		int knownDelta = (height == UNKNOWN ? 0 : 1) - (old == UNKNOWN ? 0 : 1);
+		mKnownHeightTotal += heightDelta;
+		mKnownCount += knownDelta;
+		for(int i = position + 1; i <= mCount; i += (i & -i)) {
+			mHeightTree[i] += heightDelta;
+			mKnownTree[i] += knownDelta;
+		}
+	}
+
+	private void resize(int count) {
+		int[] heights = new int[count];
+		int[] widths = new int[count];
+		int[] originalHeights = new int[count];
+		int keep = Math.min(count, mCount);
+		System.arraycopy(mHeights, 0, heights, 0, keep);
+		System.arraycopy(mOriginalWidths, 0, widths, 0, keep);
+		System.arraycopy(mOriginalHeights, 0, originalHeights, 0, keep);
+		for(int i = keep; i < count; i++) {
+			heights[i] = UNKNOWN;
+		}
+		mHeights = heights;
+		mOriginalWidths = widths;
+		mOriginalHeights = originalHeights;
+		mCount = count;
+	}
+
+	/** Rebuilds both Fenwick trees from mHeights in O(n) */
+	private void rebuild() {
+		mHeightTree = new long[mCount + 1];
+		mKnownTree = new int[mCount + 1];
+		mKnownHeightTotal = 0;
+		mKnownCount = 0;
+		for(int i = 1; i <= mCount; i++) {
+			int h = mHeights[i - 1];
+			if(h != UNKNOWN) {
+				mHeightTree[i] += h + mVerticalSpacing;
+				mKnownTree[i]++;
+				mKnownHeightTotal += h + mVerticalSpacing;
+				mKnownCount++;
+			}
+			int parent = i + (i & -i);
+			if(parent <= mCount) {
+				mHeightTree[parent] += mHeightTree[i];
+				mKnownTree[parent] += mKnownTree[i];
+			}
+		}
+	}
+}
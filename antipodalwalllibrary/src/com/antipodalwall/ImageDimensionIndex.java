@@ -0,0 +1,443 @@
+package com.antipodalwall;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import android.content.res.AssetManager;
+import android.util.Log;
+
+/**
+ * An {@link ItemSizeSource} for walls of images, built by reading just the
+ * header of each image - the PNG IHDR chunk, or the JPEG markers up to the
+ * first SOF - rather than decoding it. JPEGs whose EXIF orientation turns
+ * them a quarter turn have their width and height swapped, to match how
+ * they are shown. Reading a header is a few hundred
+ * bytes for most files, so a whole gallery can be indexed before the user
+ * has scrolled far, and the wall places items it hasn't bound at their real
+ * heights instead of estimates.
+ *
+ * The headers are read in chunks on the wall's background executor, in its
+ * prefetch lane, so several chunks are read in parallel and the top of the
+ * wall is indexed first. Each chunk's sizes are handed to the wall together
+ * on the UI thread.
+ *
+ * Sizes are stored by position, in two int arrays. If the images move
+ * position, build a new index.
+ *
+ * <pre>
+ * ImageDimensionIndex index = new ImageDimensionIndex(
+ * 		ImageDimensionIndex.assetSource(getAssets(), names));
+ * index.start(wall);
+ * </pre>
+ */
+public class ImageDimensionIndex implements ItemSizeSource {
+	private static final String TAG = "AntipodalWall";
+	private static final boolean DEBUG = false;
+
+	/** Number of headers read by each background task */
+	private static final int CHUNK_SIZE = 32;
+
+	/** Read buffer; big enough for most headers in one read */
+	private static final int BUFFER_SIZE = 512;
+
+	private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+	/** Starts an APP1 segment holding EXIF data */
+	private static final byte[] EXIF_HEADER = { 'E', 'x', 'i', 'f', 0, 0 };
+
+	/** The EXIF tag giving how the image is turned when shown */
+	private static final int EXIF_TAG_ORIENTATION = 0x0112;
+
+	/**
+	 * Opens images by position.
+	 */
+	public interface Source {
+		/**
+		 * @return The number of images.
+		 */
+		int getCount();
+
+		/**
+		 * Opens an image. Called on a background thread.
+		 *
+		 * @param position Index into the adapter.
+		 * @return A stream positioned at the start of the image, or null if
+		 *         there isn't one.
+		 */
+		InputStream open(int position) throws IOException;
+	}
+
+	private final Source mSource;
+	private final int[] mWidths;
+	private final int[] mHeights;
+	private final ArrayList<WallTask> mTasks = new ArrayList<WallTask>();
+	private AntipodalWallLayout mWall;
+	private int mIndexedCount;
+
+	/**
+	 * @param source Where to read the images from.
+	 */
+	public ImageDimensionIndex(Source source) {
+		mSource = source;
+		mWidths = new int[source.getCount()];
+		mHeights = new int[mWidths.length];
+	}
+
+	/**
+	 * @param files The images, in adapter order.
+	 * @return A source reading the files.
+	 */
+	public static Source fileSource(final List<File> files) {
+		return new Source() {
+			public int getCount() {
+				return files.size();
+			}
+
+			public InputStream open(int position) throws IOException {
+				// FileInputStream skips with a seek, so the segments before
+				// a JPEG's SOF are never read.
+				return new FileInputStream(files.get(position));
+			}
+		};
+	}
+
+	/**
+	 * @param assets The app's assets.
+	 * @param names The asset paths of the images, in adapter order.
+	 * @return A source reading the assets.
+	 */
+	public static Source assetSource(final AssetManager assets, final List<String> names) {
+		return new Source() {
+			public int getCount() {
+				return names.size();
+			}
+
+			public InputStream open(int position) throws IOException {
+				return assets.open(names.get(position));
+			}
+		};
+	}
+
+	/**
+	 * Makes this the wall's {@link ItemSizeSource} and starts reading the
+	 * headers on its background executor. Reading stops if the wall is
+	 * detached from its window, or {@link #cancel()} is called.
+	 *
+	 * @param wall The wall to index images for.
+	 */
+	public void start(AntipodalWallLayout wall) {
+		cancel();
+		mWall = wall;
+		wall.setItemSizeSource(this);
+		for(int start = 0; start < mWidths.length; start += CHUNK_SIZE) {
+			int end = Math.min(start + CHUNK_SIZE, mWidths.length);
+			if(isIndexed(start, end))
+				continue;
+			WallTask task = new ChunkTask(start, end);
+			mTasks.add(task);
+			wall.runInBackground(task);
+		}
+	}
+
+	/**
+	 * Stops reading headers. Sizes already read are kept.
+	 */
+	public void cancel() {
+		for(int i = mTasks.size() - 1; i >= 0; i--) {
+			mTasks.get(i).cancel();
+		}
+		mTasks.clear();
+	}
+
+	/**
+	 * @return True once every header has been read (or failed to read).
+	 */
+	public boolean isFinished() {
+		return mTasks.isEmpty() && mWall != null;
+	}
+
+	/**
+	 * @return The number of images whose size is known.
+	 */
+	public int getIndexedCount() {
+		return mIndexedCount;
+	}
+
+	public boolean hasItemSize(int position) {
+		return position >= 0 && position < mWidths.length && mWidths[position] > 0;
+	}
+
+	public int getItemWidth(int position) {
+		return mWidths[position];
+	}
+
+	public int getItemHeight(int position) {
+		return mHeights[position];
+	}
+
+	private boolean isIndexed(int start, int end) {
+		for(int i = start; i < end; i++) {
+			if(mWidths[i] <= 0)
+				return false;
+		}
+		return true;
+	}
+
+	/** Reads the headers of one run of positions */
+	private class ChunkTask extends WallTask {
+		private final int mStart;
+		private final int mEnd;
+
+		ChunkTask(int start, int end) {
+			super(WallExecutor.LANE_PREFETCH);
+			mStart = start;
+			mEnd = end;
+		}
+
+		@Override
+		protected Object doInBackground() {
+			int[] sizes = new int[(mEnd - mStart) * 2];
+			int[] size = new int[2];
+			for(int i = mStart; i < mEnd && !isCancelled(); i++) {
+				if(readHeader(i, size)) {
+					sizes[(i - mStart) * 2] = size[0];
+					sizes[(i - mStart) * 2 + 1] = size[1];
+				}
+			}
+			return sizes;
+		}
+
+		@Override
+		protected void onResult(Object result) {
+			mTasks.remove(this);
+			int[] sizes = (int[]) result;
+			int[] positions = new int[mEnd - mStart];
+			int[] widths = new int[positions.length];
+			int[] heights = new int[positions.length];
+			int count = 0;
+			for(int i = mStart; i < mEnd; i++) {
+				int width = sizes[(i - mStart) * 2];
+				int height = sizes[(i - mStart) * 2 + 1];
+				if(width <= 0 || height <= 0 || mWidths[i] > 0)
+					continue;
+				mWidths[i] = width;
+				mHeights[i] = height;
+				mIndexedCount++;
+				positions[count] = i;
+				widths[count] = width;
+				heights[count] = height;
+				count++;
+			}
+			// One pass over the wall for the whole chunk.
+			mWall.notifyItemSizesChanged(positions, widths, heights, count);
+			if(DEBUG) Log.d(TAG, "Indexed " + mIndexedCount + " of " + mWidths.length + " image sizes");
+		}
+
+		@Override
+		protected void onCancelled() {
+			mTasks.remove(this);
+		}
+	}
+
+	private boolean readHeader(int position, int[] size) {
+		InputStream in = null;
+		try {
+			in = mSource.open(position);
+			if(in == null)
+				return false;
+			return readDimensions(new BufferedInputStream(in, BUFFER_SIZE), size);
+		} catch(IOException e) {
+			if(DEBUG) Log.d(TAG, "Can't read the image header at " + position, e);
+			return false;
+		} finally {
+			if(in != null) {
+				try {
+					in.close();
+				} catch(IOException e) {
+					// Nothing we can do about it.
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the size of a PNG or JPEG image from its header, without
+	 * decoding it. The stream is read no further than the header. A JPEG
+	 * turned a quarter turn by its EXIF orientation (5 to 8) has its width
+	 * and height swapped.
+	 *
+	 * @param in The image, at its start.
+	 * @param size Set to the width and height, if found.
+	 * @return True if the size was found, false if the image isn't a PNG or
+	 *         JPEG or its header is damaged.
+	 */
+	public static boolean readDimensions(InputStream in, int[] size) throws IOException {
+		int first = in.read();
+		int second = in.read();
+		if(first == 0xFF && second == 0xD8)
+			return readJpegDimensions(in, size);
+		if(first == (PNG_SIGNATURE[0] & 0xFF) && second == PNG_SIGNATURE[1])
+			return readPngDimensions(in, size);
+		return false;
+	}
+
+	private static boolean readPngDimensions(InputStream in, int[] size) throws IOException {
+		for(int i = 2; i < PNG_SIGNATURE.length; i++) {
+			if(in.read() != PNG_SIGNATURE[i])
+				return false;
+		}
+		// IHDR is always the first chunk: length, type, then the size.
+		readInt(in);
+		if(readInt(in) != 0x49484452)
+			return false;
+		int width = readInt(in);
+		int height = readInt(in);
+		if(width <= 0 || height <= 0)
+			return false;
+		size[0] = width;
+		size[1] = height;
+		return true;
+	}
+
+	private static boolean readJpegDimensions(InputStream in, int[] size) throws IOException {
+		int orientation = 0;
+		while(true) {
+			if(in.read() != 0xFF)
+				return false;
+			int marker;
+			do {
+				marker = in.read();
+			} while(marker == 0xFF);
+			if(marker < 0)
+				return false;
+			// Markers without a length.
+			if(marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8))
+				continue;
+			// End of image, or start of scan - we've missed the frame header.
+			if(marker == 0xD9 || marker == 0xDA)
+				return false;
+			int length = readUnsignedShort(in);
+			if(length < 2)
+				return false;
+			// SOF0 to SOF15, except DHT, JPG and DAC which share the range.
+			if(marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+				in.read(); // Sample precision
+				int height = readUnsignedShort(in);
+				int width = readUnsignedShort(in);
+				if(width <= 0 || height <= 0)
+					return false;
+				if(orientation >= 5 && orientation <= 8) {
+					// Transposed or turned a quarter turn when shown.
+					size[0] = height;
+					size[1] = width;
+				} else {
+					size[0] = width;
+					size[1] = height;
+				}
+				return true;
+			}
+			// APP1, which comes before the frame header if there's EXIF.
+			if(marker == 0xE1 && orientation == 0) {
+				orientation = readExifOrientation(in, length - 2);
+			} else {
+				skipFully(in, length - 2);
+			}
+		}
+	}
+
+	/**
+	 * Reads the orientation tag from the first IFD of an APP1 segment, if
+	 * the segment holds EXIF data.
+	 *
+	 * @param length The length of the segment after its length field. The
+	 *            stream is left at the end of the segment.
+	 * @return The orientation, from 1 to 8, or 0 if there isn't one.
+	 */
+	private static int readExifOrientation(InputStream in, int length) throws IOException {
+		int remaining = length;
+		int orientation = 0;
+		// The EXIF header and the 8 byte TIFF header.
+		if(remaining >= EXIF_HEADER.length + 8) {
+			boolean exif = true;
+			for(int i = 0; i < EXIF_HEADER.length; i++) {
+				if(in.read() != EXIF_HEADER[i])
+					exif = false;
+			}
+			remaining -= EXIF_HEADER.length;
+			int byteOrder = exif ? readUnsignedShort(in) : 0;
+			boolean littleEndian = byteOrder == 0x4949; // "II", rather than "MM"
+			if(littleEndian || byteOrder == 0x4D4D) {
+				readUnsignedShort(in, littleEndian); // 42
+				// Offsets are from the start of the TIFF header.
+				long skip = (readInt(in, littleEndian) & 0xFFFFFFFFL) - 8;
+				remaining -= 8;
+				if(skip >= 0 && skip + 2 <= remaining) {
+					skipFully(in, skip);
+					remaining -= skip;
+					int entries = readUnsignedShort(in, littleEndian);
+					remaining -= 2;
+					// Each entry is a tag, type, count and 4 byte value.
+					for(int i = 0; i < entries && remaining >= 12; i++) {
+						int tag = readUnsignedShort(in, littleEndian);
+						readUnsignedShort(in, littleEndian);
+						readInt(in, littleEndian);
+						int value = readUnsignedShort(in, littleEndian);
+						readUnsignedShort(in, littleEndian);
+						remaining -= 12;
+						if(tag == EXIF_TAG_ORIENTATION) {
+							orientation = value >= 1 && value <= 8 ? value : 0;
+							break;
+						}
+					}
+				}
+			} else if(exif) {
+				remaining -= 2;
+			}
+		}
+		skipFully(in, remaining);
+		return orientation;
+	}
+
+	private static int readUnsignedShort(InputStream in) throws IOException {
+		int high = in.read();
+		int low = in.read();
+		if((high | low) < 0)
+			throw new EOFException();
+		return (high << 8) | low;
+	}
+
+	private static int readInt(InputStream in) throws IOException {
+		return (readUnsignedShort(in) << 16) | readUnsignedShort(in);
+	}
+
+	private static int readUnsignedShort(InputStream in, boolean littleEndian) throws IOException {
+		int value = readUnsignedShort(in);
+		return littleEndian ? ((value & 0xFF) << 8) | (value >> 8) : value;
+	}
+
+	private static int readInt(InputStream in, boolean littleEndian) throws IOException {
+		if(!littleEndian)
+			return readInt(in);
+		int low = readUnsignedShort(in, true);
+		return (readUnsignedShort(in, true) << 16) | low;
+	}
+
+	private static void skipFully(InputStream in, long count) throws IOException {
+		while(count > 0) {
+			long skipped = in.skip(count);
+			if(skipped <= 0) {
+				// skip() may give up early without being at the end.
+				if(in.read() < 0)
+					throw new EOFException();
+				skipped = 1;
+			}
+			count -= skipped;
+		}
+	}
+}
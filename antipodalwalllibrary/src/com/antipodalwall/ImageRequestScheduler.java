@@ -0,0 +1,296 @@
+package com.antipodalwall;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+
+/**
+ * Runs image loads for an {@link AntipodalWallLayout} on the wall's
+ * {@link WallExecutor}, in order of how soon they're needed: loads for
+ * items on screen in the visible lane, then items just ahead of where the
+ * wall is scrolling in the prefetch lane, nearest first. Loads for items
+ * that scroll out of both are put off to the speculative lane rather than
+ * dropped - the wall may still hold their views, and can show them again
+ * without binding them - and a load is only cancelled when the view it's
+ * for is recycled.
+ *
+ * Attach it with
+ * {@link AntipodalWallLayout#setImageRequestScheduler(ImageRequestScheduler)}
+ * and start loads from the adapter's getView(...) with
+ * {@link #load(View, int, Request)}. Apart from the work done in
+ * {@link Request#load()}, everything happens on the UI thread.
+ */
+public class ImageRequestScheduler {
+	/**
+	 * One image load. {@link #load()} runs on a background thread, and the rest
+	 * on the UI thread.
+	 */
+	public static abstract class Request {
+		private volatile boolean mCancelled;
+
+		/**
+		 * Does the loading, e.g. decodes a bitmap. Long loads should check
+		 * {@link #isCancelled()} now and then and give up early if it's
+		 * true.
+		 *
+		 * @return The result to hand to {@link #onLoaded(Object)}.
+		 */
+		protected abstract Object load();
+
+		/**
+		 * Called with the result of {@link #load()} if the request wasn't
+		 * cancelled in the meantime.
+		 */
+		protected abstract void onLoaded(Object result);
+
+		/**
+		 * Called if the request is cancelled before its result is
+		 * delivered.
+		 */
+		protected void onCancelled() {
+		}
+
+		public boolean isCancelled() {
+			return mCancelled;
+		}
+	}
+
+	/** A request queued or running for a view */
+	private static class Task {
+		final View view;
+		final int position;
+		final Request request;
+		final long sequence;
+		int lane;
+		int distance;
+
+		/** What's queued for it now, and where */
+		Load load;
+		WallExecutor executor;
+
+		Task(View view, int position, Request request, long sequence) {
+			this.view = view;
+			this.position = position;
+			this.request = request;
+			this.sequence = sequence;
+		}
+	}
+
+	/**
+	 * A task's turn on the executor. A lane can't be changed once queued, so
+	 * moving a task to another lane queues a new Load.
+	 */
+	private class Load extends WallTask {
+		private final Task mTask;
+
+		Load(Task task) {
+			super(task.lane);
+			mTask = task;
+		}
+
+		@Override
+		protected Object doInBackground() {
+			final Request request = mTask.request;
+			if(request.mCancelled)
+				return null;
+			final Object result = request.load();
+			mHandler.post(new Runnable() {
+				public void run() {
+					if(request.mCancelled || mTasks.get(mTask.view) != mTask)
+						return;
+					mTasks.remove(mTask.view);
+					request.onLoaded(result);
+				}
+			});
+			return null;
+		}
+	}
+
+	/** Lane first, then nearest, then oldest */
+	private static final Comparator<Task> ORDER = new Comparator<Task>() {
+		public int compare(Task a, Task b) {
+			if(a.lane != b.lane)
+				return a.lane < b.lane ? -1 : 1;
+			if(a.distance != b.distance)
+				return a.distance < b.distance ? -1 : 1;
+			return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+		}
+	};
+
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+	/** The current request for each view */
+	private final HashMap<View, Task> mTasks = new HashMap<View, Task>();
+
+	/** Reusable list for reprioritizing queued tasks */
+	private final ArrayList<Task> mQueued = new ArrayList<Task>();
+
+	/** The wall whose executor runs the loads, set by the wall itself */
+	private AntipodalWallLayout mWall;
+
+	private long mSequence;
+	private int mFirstVisible = AntipodalWallLayout.INVALID_POSITION;
+	private int mLastVisible = AntipodalWallLayout.INVALID_POSITION;
+
+	/** Items predicted to be on screen when the current fling stops */
+	private int mPredictedFirst = AntipodalWallLayout.INVALID_POSITION;
+	private int mPredictedLast = AntipodalWallLayout.INVALID_POSITION;
+
+	/** True if the wall last moved down, towards the end of the adapter */
+	private boolean mScrollingDown = true;
+
+	/** Number of items past the screen to load ahead, -1 for a screenful */
+	private int mPrefetchDistance = -1;
+
+	/**
+	 * Sets how many items past the edge of the screen, in the direction
+	 * the wall is scrolling, are loaded ahead of time.
+	 *
+	 * @param items Number of items, or -1 for as many as are on screen.
+	 */
+	public void setPrefetchDistance(int items) {
+		mPrefetchDistance = items;
+	}
+
+	/**
+	 * Queues a load for a view, cancelling whatever load the view had
+	 * before.
+	 *
+	 * @param view The view the image is for - usually the one being bound
+	 *            in getView(...).
+	 * @param position The adapter position the view is being bound for.
+	 * @param request The load to run.
+	 */
+	public void load(View view, int position, Request request) {
+		cancel(view);
+		Task task = new Task(view, position, request, mSequence++);
+		prioritize(task);
+		if(task.lane == WallExecutor.LANE_SPECULATIVE) {
+			// The wall is binding it, so it's about to be needed whatever
+			// the last visible range said.
+			task.lane = WallExecutor.LANE_PREFETCH;
+		}
+		mTasks.put(view, task);
+		queue(task);
+	}
+
+	/**
+	 * Cancels the load for a view, if it has one.
+	 *
+	 * @param view The view whose load should be cancelled.
+	 */
+	public void cancel(View view) {
+		Task task = mTasks.remove(view);
+		if(task != null)
+			cancel(task);
+	}
+
+	/**
+	 * Cancels every load.
+	 */
+	public void cancelAll() {
+		for(Task task : mTasks.values()) {
+			cancel(task);
+		}
+		mTasks.clear();
+	}
+
+	/**
+	 * Called by the wall when the scheduler is attached to it or detached.
+	 * Loads already queued stay on the executor they were queued on.
+	 */
+	void setWall(AntipodalWallLayout wall) {
+		mWall = wall;
+	}
+
+	/**
+	 * Called by the wall, at most once per frame, with the items on screen.
+	 * Re-orders the queued loads to suit. None are dropped: a view whose
+	 * item has scrolled away may still be held by the wall and re-attached
+	 * without being bound again, so its load is only cancelled when the
+	 * view is recycled.
+	 */
+	void onVisibleRangeChanged(int firstVisible, int lastVisible) {
+		if(firstVisible == mFirstVisible && lastVisible == mLastVisible)
+			return;
+		if(mFirstVisible != AntipodalWallLayout.INVALID_POSITION && firstVisible != mFirstVisible)
+			mScrollingDown = firstVisible > mFirstVisible;
+		mFirstVisible = firstVisible;
+		mLastVisible = lastVisible;
+
+		// Take out every load that hasn't started and queue it again in its
+		// new lane, nearest first.
+		mQueued.clear();
+		for(Task task : mTasks.values()) {
+			if(task.executor.remove(task.load)) {
+				prioritize(task);
+				mQueued.add(task);
+			}
+		}
+		Collections.sort(mQueued, ORDER);
+		for(int i = 0; i < mQueued.size(); i++) {
+			queue(mQueued.get(i));
+		}
+		mQueued.clear();
+	}
+
+	/**
+	 * Called by the wall when a fling starts, with the items it expects to
+	 * be on screen when the fling stops, so their loads aren't put off on
+	 * the way. Called with INVALID_POSITION when the fling is over.
+	 */
+	void setPredictedRange(int first, int last) {
+		mPredictedFirst = first;
+		mPredictedLast = last;
+	}
+
+	private void prioritize(Task task) {
+		if(mFirstVisible == AntipodalWallLayout.INVALID_POSITION) {
+			// Nothing's been laid out yet - it's all about to be on screen.
+			task.lane = WallExecutor.LANE_VISIBLE;
+			task.distance = task.position;
+			return;
+		}
+		int position = task.position;
+		if(position >= mFirstVisible && position <= mLastVisible) {
+			task.lane = WallExecutor.LANE_VISIBLE;
+			task.distance = position - mFirstVisible;
+			return;
+		}
+		int prefetch = mPrefetchDistance >= 0 ? mPrefetchDistance : mLastVisible - mFirstVisible + 1;
+		int ahead = mScrollingDown ? position - mLastVisible : mFirstVisible - position;
+		if(ahead > 0 && ahead <= prefetch) {
+			task.lane = WallExecutor.LANE_PREFETCH;
+			task.distance = ahead;
+		} else if(position >= mPredictedFirst && position <= mPredictedLast) {
+			// Where the fling will stop - after the items just ahead.
+			task.lane = WallExecutor.LANE_PREFETCH;
+			task.distance = prefetch + 1 + position - mPredictedFirst;
+		} else {
+			// Nearest the screen first, whichever side it's on.
+			task.lane = WallExecutor.LANE_SPECULATIVE;
+			task.distance = position < mFirstVisible ? mFirstVisible - position : position - mLastVisible;
+		}
+	}
+
+	private void queue(Task task) {
+		WallExecutor executor = mWall != null ? mWall.getBackgroundExecutor()
+				: AntipodalWallLayout.getDefaultExecutor();
+		task.load = new Load(task);
+		task.load.sequence = executor.nextSequence();
+		task.executor = executor;
+		executor.execute(task.load);
+	}
+
+	private void cancel(Task task) {
+		task.request.mCancelled = true;
+		task.load.markCancelled();
+		task.executor.remove(task.load);
+		task.request.onCancelled();
+	}
+}
@@ -0,0 +1,119 @@
+package com.antipodalwall;
+
+import android.widget.AdapterView;
+
+/**
+ * One change to an adapter's items - a range inserted, removed or changed,
+ * or an item moved. {@link SnapshotAdapter} records them as its items are
+ * changed and hands each frame's worth to the wall together, so the wall
+ * only places items again once.
+ */
+class ItemChange {
+	static final int INSERT = 0;
+	static final int REMOVE = 1;
+	static final int MOVE = 2;
+	static final int CHANGE = 3;
+
+	final int type;
+	final int position;
+
+	/** Number of items, or for a move, where the item moved to */
+	int count;
+
+	private ItemChange(int type, int position, int count) {
+		this.type = type;
+		this.position = position;
+		this.count = count;
+	}
+
+	static ItemChange insert(int position, int count) {
+		return new ItemChange(INSERT, position, count);
+	}
+
+	static ItemChange remove(int position, int count) {
+		return new ItemChange(REMOVE, position, count);
+	}
+
+	static ItemChange move(int fromPosition, int toPosition) {
+		return new ItemChange(MOVE, fromPosition, toPosition);
+	}
+
+	static ItemChange change(int position, int count) {
+		return new ItemChange(CHANGE, position, count);
+	}
+
+	/**
+	 * Folds another change into this one if it simply carries on from it,
+	 * e.g. one append after another.
+	 *
+	 * @return True if it was folded in, and needn't be kept.
+	 */
+	boolean merge(ItemChange next) {
+		if(next.type != type || type == MOVE)
+			return false;
+		if(type == REMOVE ? next.position == position : next.position == position + count) {
+			count += next.count;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return The first position whose item is different after the change.
+	 */
+	int getFirstAffected() {
+		return type == MOVE ? Math.min(position, count) : position;
+	}
+
+	/**
+	 * Works out where an item is after the change.
+	 *
+	 * @param index The item's position before the change.
+	 * @return Its position after the change. If it was removed, whatever
+	 *         took its place.
+	 */
+	int mapPosition(int index) {
+		if(index == AdapterView.INVALID_POSITION)
+			return index;
+		switch(type) {
+		case INSERT:
+			return index >= position ? index + count : index;
+		case REMOVE:
+			if(index >= position + count)
+				return index - count;
+			return index >= position ? position : index;
+		case MOVE:
+			if(index == position)
+				return count;
+			if(position < index && index <= count)
+				return index - 1;
+			if(count <= index && index < position)
+				return index + 1;
+			return index;
+		default:
+			return index;
+		}
+	}
+
+	/**
+	 * Moves what the estimator knows about items to match the change.
+	 */
+	void applyTo(HeightEstimator heights) {
+		switch(type) {
+		case INSERT:
+			heights.insertItems(position, count);
+			break;
+		case REMOVE:
+			heights.removeItems(position, count);
+			break;
+		case MOVE:
+			heights.moveItem(position, count);
+			break;
+		case CHANGE:
+			// The new items may be a different size - forget the old ones.
+			heights.removeItems(position, count);
+			heights.insertItems(position, count);
+			break;
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package com.antipodalwall;
+
+/**
+ * Optional source of item dimensions that doesn't require binding a view.
+ *
+ * If the adapter given to {@link AntipodalWallLayout} implements this
+ * interface (or one is set with
+ * {@link AntipodalWallLayout#setItemSizeSource(ItemSizeSource)}) the layout
+ * uses it to estimate the height of items it hasn't measured yet - for
+ * example from image metadata - instead of guessing from the items it has
+ * seen so far.
+ *
+ * The width and height are the original size of the item, the same values
+ * an adapter would pass to View.measure(...) in getView(...). The layout
+ * scales them to fit the column width.
+ */
+public interface ItemSizeSource {
+	/**
+	 * @param position Index into the adapter.
+	 * @return True if the size of the item at this position is known.
+	 */
+	boolean hasItemSize(int position);
+
+	/**
+	 * @param position Index into the adapter.
+	 * @return The original width of the item at this position.
+	 */
+	int getItemWidth(int position);
+
+	/**
+	 * @param position Index into the adapter.
+	 * @return The original height of the item at this position.
+	 */
+	int getItemHeight(int position);
+}
@@ -0,0 +1,27 @@
+package com.antipodalwall;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Creates empty item views ahead of time, so that
+ * {@link AntipodalWallLayout#preInflateItemViews(ItemViewFactory, int, int)}
+ * can warm up the layout's recycled views before the first screen is
+ * filled. The adapter's getView(...) is then handed one of these as its
+ * convertView and only has to bind it.
+ */
+public interface ItemViewFactory {
+	/**
+	 * Creates an unbound item view, exactly as the adapter's getView(...)
+	 * would when given a null convertView. This is called on a background
+	 * thread; if the view can't be created off the UI thread (e.g. it
+	 * creates a Handler) throw a RuntimeException and the remaining views
+	 * will be created on the UI thread instead.
+	 *
+	 * @param parent The layout the view will be added to. Only use it for
+	 *            inflating layout params - don't touch it otherwise.
+	 * @param viewType The adapter's view type to create.
+	 * @return The new view.
+	 */
+	View createItemView(ViewGroup parent, int viewType);
+}
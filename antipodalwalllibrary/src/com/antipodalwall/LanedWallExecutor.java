@@ -0,0 +1,62 @@
+package com.antipodalwall;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.os.Process;
+
+/**
+ * The usual {@link WallExecutor}: a small pool of background priority
+ * threads taking tasks from a queue ordered by lane.
+ */
+public class LanedWallExecutor implements WallExecutor {
+	/** Default number of worker threads */
+	public static final int DEFAULT_POOL_SIZE = 2;
+
+	private final ThreadPoolExecutor mPool;
+	private final AtomicLong mSequence = new AtomicLong();
+
+	public LanedWallExecutor() {
+		this(DEFAULT_POOL_SIZE);
+	}
+
+	/**
+	 * @param poolSize Number of worker threads.
+	 */
+	public LanedWallExecutor(int poolSize) {
+		if(poolSize < 1)
+			poolSize = 1;
+		mPool = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+				new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+					public Thread newThread(final Runnable r) {
+						Thread thread = new Thread(new Runnable() {
+							public void run() {
+								Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+								r.run();
+							}
+						}, "AntipodalWall background");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	public void execute(WallTask task) {
+		mPool.execute(task);
+	}
+
+	public boolean remove(WallTask task) {
+		return mPool.remove(task);
+	}
+
+	public long nextSequence() {
+		return mSequence.getAndIncrement();
+	}
+
+	public void shutdown() {
+		mPool.shutdownNow();
+	}
+}
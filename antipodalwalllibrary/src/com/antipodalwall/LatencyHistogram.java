@@ -0,0 +1,122 @@
+package com.antipodalwall;
+
+/**
+ * A fixed-size histogram of durations in nanoseconds. Buckets grow
+ * logarithmically - each power of two is split into
+ * {@link #SUB_BUCKETS} linear sub-buckets - so percentiles are accurate to
+ * within about 25% anywhere from a microsecond to several seconds, and
+ * recording a sample never allocates.
+ *
+ * Recording and reading are synchronized so stats can be sampled from a
+ * background thread while the UI thread records.
+ */
+public class LatencyHistogram {
+	/** Linear sub-buckets per power of two */
+	private static final int SUB_BUCKETS = 4;
+	private static final int SUB_BUCKET_BITS = 2;
+
+	/** Powers of two covered - 2^40ns is about 18 minutes */
+	private static final int POWERS = 40;
+
+	private final long[] mCounts = new long[POWERS * SUB_BUCKETS];
+	private final long mSlowThresholdNanos;
+	private long mTotalCount;
+	private long mSlowCount;
+	private long mMaxNanos;
+	private long mTotalNanos;
+
+	/**
+	 * @param slowThresholdNanos Samples longer than this are counted as
+	 *            slow.
+	 */
+	public LatencyHistogram(long slowThresholdNanos) {
+		mSlowThresholdNanos = slowThresholdNanos;
+	}
+
+	/**
+	 * Records one sample.
+	 *
+	 * @param nanos The duration, in nanoseconds.
+	 */
+	public synchronized void record(long nanos) {
+		if(nanos < 0)
+			nanos = 0;
+		mCounts[bucketFor(nanos)]++;
+		mTotalCount++;
+		mTotalNanos += nanos;
+		if(nanos > mMaxNanos)
+			mMaxNanos = nanos;
+		if(nanos > mSlowThresholdNanos)
+			mSlowCount++;
+	}
+
+	/**
+	 * @param fraction The percentile wanted, from 0 to 1 (e.g. 0.95).
+	 * @return The upper bound of the bucket holding that percentile, in
+	 *         nanoseconds, or 0 if nothing has been recorded.
+	 */
+	public synchronized long getPercentile(double fraction) {
+		if(mTotalCount == 0)
+			return 0;
+		long target = (long) Math.ceil(fraction * mTotalCount);
+		if(target < 1)
+			target = 1;
+		long seen = 0;
+		for(int i = 0; i < mCounts.length; i++) {
+			seen += mCounts[i];
+			if(seen >= target)
+				return Math.min(upperBoundOf(i), mMaxNanos);
+		}
+		return mMaxNanos;
+	}
+
+	public synchronized long getCount() {
+		return mTotalCount;
+	}
+
+	/**
+	 * @return The number of samples longer than the slow threshold.
+	 */
+	public synchronized long getSlowCount() {
+		return mSlowCount;
+	}
+
+	public synchronized long getMaxNanos() {
+		return mMaxNanos;
+	}
+
+	public synchronized long getMeanNanos() {
+		return mTotalCount == 0 ? 0 : mTotalNanos / mTotalCount;
+	}
+
+	public synchronized void reset() {
+		for(int i = 0; i < mCounts.length; i++) {
+			mCounts[i] = 0;
+		}
+		mTotalCount = 0;
+		mSlowCount = 0;
+		mMaxNanos = 0;
+		mTotalNanos = 0;
+	}
+
+	private static int bucketFor(long nanos) {
+		if(nanos < SUB_BUCKETS)
+			return (int) nanos;
+		int power = 63 - Long.numberOfLeadingZeros(nanos);
+		if(power >= POWERS)
+			return POWERS * SUB_BUCKETS - 1;
+		// The bits just below the highest one pick the sub-bucket.
+		int sub = (int) (nanos >>> (power - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return power * SUB_BUCKETS + sub;
+	}
+
+	private static long upperBoundOf(int bucket) {
+		int power = bucket / SUB_BUCKETS;
+		int sub = bucket % SUB_BUCKETS;
+		if(power < SUB_BUCKET_BITS)
+			return bucket;
+		long base = 1L << power;
+		long width = base >>> SUB_BUCKET_BITS;
+		return base + (sub + 1) * width - 1;
+	}
+}
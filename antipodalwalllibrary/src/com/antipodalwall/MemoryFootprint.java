@@ -0,0 +1,78 @@
+package com.antipodalwall;
+
+/**
+ * A snapshot of what an {@link AntipodalWallLayout} is holding on to,
+ * from {@link AntipodalWallLayout#getMemoryFootprint()}.
+ *
+ * View counts are exact. Byte counts only cover the layout's own
+ * bookkeeping - the views themselves (and any bitmaps they hold) cost
+ * whatever the adapter made them cost.
+ */
+public class MemoryFootprint {
+	/** Approximate size of an AdapterViewDetails plus its LinkedList node */
+	static final int BYTES_PER_HIDDEN_VIEW = 48;
+
+	/** Size of a compacted (width, height, index) triple */
+	static final int BYTES_PER_COMPACTED_VIEW = 12;
+
+	/** Views currently attached to the layout */
+	public final int attachedViews;
+
+	/** Views waiting in the recycle cache */
+	public final int cachedViews;
+
+	/** Views detached in the scrap heap, waiting to come back on screen */
+	public final int scrapViews;
+
+	/** Views bound ahead of time, waiting to be laid out */
+	public final int prefetchedViews;
+
+	/** Hidden views above/below the columns still held as objects */
+	public final int hiddenViews;
+
+	/** Hidden views spilled to compact form */
+	public final int compactedHiddenViews;
+
+	/** Approximate bytes used by the item height model */
+	public final long heightEstimatorBytes;
+
+	MemoryFootprint(int attachedViews, int cachedViews, int scrapViews,
+			int prefetchedViews, int hiddenViews, int compactedHiddenViews,
+			long heightEstimatorBytes) {
+		this.attachedViews = attachedViews;
+		this.cachedViews = cachedViews;
+		this.scrapViews = scrapViews;
+		this.prefetchedViews = prefetchedViews;
+		this.hiddenViews = hiddenViews;
+		this.compactedHiddenViews = compactedHiddenViews;
+		this.heightEstimatorBytes = heightEstimatorBytes;
+	}
+
+	/**
+	 * @return Approximate bytes used by the layout's bookkeeping, excluding
+	 *         the views themselves.
+	 */
+	public long getBookkeepingBytes() {
+		return (long) hiddenViews * BYTES_PER_HIDDEN_VIEW
+				+ (long) compactedHiddenViews * BYTES_PER_COMPACTED_VIEW
+				+ heightEstimatorBytes;
+	}
+
+	/**
+	 * @return The number of views held that aren't on screen.
+	 */
+	public int getOffscreenViews() {
+		return cachedViews + scrapViews + prefetchedViews;
+	}
+
+	@Override
+	public String toString() {
+		return "MemoryFootprint{attached=" + attachedViews
+				+ ", cached=" + cachedViews
+				+ ", scrap=" + scrapViews
+				+ ", prefetched=" + prefetchedViews
+				+ ", hidden=" + hiddenViews
+				+ ", compacted=" + compactedHiddenViews
+				+ ", bookkeepingBytes=" + getBookkeepingBytes() + "}";
+	}
+}
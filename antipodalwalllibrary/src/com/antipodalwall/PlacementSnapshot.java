@@ -0,0 +1,63 @@
+package com.antipodalwall;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The exact placement of the wall at one column configuration - the top of
+ * each column, how many views were hidden above it, and the height of every
+ * item seen so far - so that coming back to a configuration (e.g. rotating
+ * portrait -> landscape -> portrait) restores exactly what was there rather
+ * than re-scaling everything and picking up rounding errors.
+ */
+class PlacementSnapshot {
+	/** Column.getTop() of each column */
+	final int[] columnTops;
+
+	/** Number of views hidden above each column */
+	final int[] topHiddenCounts;
+
+	/** Height of each item, by adapter index, at this configuration */
+	final int[] heights;
+
+	/**
+	 * @param columns The columns to take the snapshot of.
+	 * @param heights Height of each item at the columns' current width. Not
+	 *            copied - the caller hands it over.
+	 */
+	PlacementSnapshot(Column[] columns, int[] heights) {
+		columnTops = new int[columns.length];
+		topHiddenCounts = new int[columns.length];
+		for(int i = 0; i < columns.length; i++) {
+			columnTops[i] = columns[i].getTop();
+			topHiddenCounts[i] = columns[i].getTopHiddenCount();
+		}
+		this.heights = heights;
+	}
+
+	/**
+	 * @return A key identifying a column configuration.
+	 */
+	static long key(float columnWidth, int numberOfColumns) {
+		return ((long) (int) columnWidth << 32) | numberOfColumns;
+	}
+
+	/**
+	 * A small least-recently-used cache of snapshots, keyed by
+	 * {@link PlacementSnapshot#key(float, int)}.
+	 */
+	static class Cache extends LinkedHashMap<Long, PlacementSnapshot> {
+		private static final long serialVersionUID = 1L;
+		private final int mMaxSize;
+
+		Cache(int maxSize) {
+			super(maxSize + 1, 1f, true);
+			mMaxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, PlacementSnapshot> eldest) {
+			return size() > mMaxSize;
+		}
+	}
+}
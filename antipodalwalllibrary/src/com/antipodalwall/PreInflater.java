@@ -0,0 +1,121 @@
+package com.antipodalwall;
+
+import java.util.ArrayList;
+
+import android.util.Log;
+import android.view.View;
+
+/**
+ * Creates item views in the background, one {@link WallTask} per view in
+ * the speculative lane, and hands them to an {@link AntipodalWallLayout}'s
+ * recycled views, so the first fill only has to bind views rather than
+ * inflate them.
+ *
+ * If the factory can't create a view off the UI thread, the rest are
+ * created on the UI thread one per message, so no single frame pays for
+ * all of them.
+ */
+class PreInflater {
+	private static final String TAG = "AntipodalWall";
+
+	private final AntipodalWallLayout mWall;
+	private final ItemViewFactory mFactory;
+	private final int mViewType;
+	private final ArrayList<WallTask> mTasks = new ArrayList<WallTask>();
+	private int mRemaining;
+	private boolean mCancelled;
+	private boolean mOnUiThread;
+
+	/**
+	 * @param wall The layout to hand the views to.
+	 * @param factory Creates the views.
+	 * @param viewType The adapter's view type to create.
+	 * @param count How many views to create.
+	 */
+	PreInflater(AntipodalWallLayout wall, ItemViewFactory factory, int viewType, int count) {
+		mWall = wall;
+		mFactory = factory;
+		mViewType = viewType;
+		mRemaining = count;
+	}
+
+	/**
+	 * Queues the views to be created on the wall's background executor.
+	 */
+	public void start() {
+		for(int i = 0; i < mRemaining; i++) {
+			WallTask task = new WallTask(WallExecutor.LANE_SPECULATIVE) {
+				@Override
+				protected Object doInBackground() {
+					try {
+						return mFactory.createItemView(mWall, mViewType);
+					} catch(RuntimeException e) {
+						return e;
+					}
+				}
+
+				@Override
+				protected void onResult(Object result) {
+					mTasks.remove(this);
+					if(result instanceof View) {
+						deliver((View) result);
+					} else {
+						fallBackToUiThread((RuntimeException) result);
+					}
+				}
+
+				@Override
+				protected void onCancelled() {
+					mTasks.remove(this);
+				}
+			};
+			mTasks.add(task);
+			mWall.runInBackground(task);
+		}
+	}
+
+	/**
+	 * Stops creating views, and drops any that haven't been handed over yet.
+	 */
+	public void cancel() {
+		mCancelled = true;
+		mWall.removeCallbacks(mCreateOnUiThread);
+		for(int i = mTasks.size() - 1; i >= 0; i--) {
+			mTasks.get(i).cancel();
+		}
+		mTasks.clear();
+	}
+
+	public boolean isFinished() {
+		return mRemaining <= 0 || mCancelled;
+	}
+
+	private void fallBackToUiThread(RuntimeException e) {
+		if(mOnUiThread)
+			return;
+		Log.w(TAG, "Can't create item views off the UI thread, creating the rest on it", e);
+		mOnUiThread = true;
+		for(int i = mTasks.size() - 1; i >= 0; i--) {
+			mTasks.get(i).cancel();
+		}
+		mTasks.clear();
+		mWall.post(mCreateOnUiThread);
+	}
+
+	/** Creates one view on the UI thread, then lets other messages through */
+	private final Runnable mCreateOnUiThread = new Runnable() {
+		public void run() {
+			if(mCancelled || mRemaining <= 0)
+				return;
+			deliver(mFactory.createItemView(mWall, mViewType));
+			mWall.post(this);
+		}
+	};
+
+	private void deliver(View view) {
+		if(mCancelled)
+			return;
+		mRemaining--;
+		mWall.addPreInflatedView(mViewType, view);
+	}
+}
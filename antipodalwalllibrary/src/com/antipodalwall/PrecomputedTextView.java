@@ -0,0 +1,67 @@
+package com.antipodalwall;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.text.Layout;
+import android.view.View;
+
+/**
+ * A simple text card that draws a layout from a {@link TextLayoutCache}
+ * rather than laying its text out itself. Measuring it only looks the
+ * layout up - if it was built ahead of time there's no text layout work
+ * on the UI thread at all.
+ */
+public class PrecomputedTextView extends View {
+	private TextLayoutCache mCache;
+	private TextLayoutCache.Style mStyle;
+	private CharSequence mText = "";
+	private Layout mLayout;
+
+	public PrecomputedTextView(Context context) {
+		super(context);
+	}
+
+	/**
+	 * Sets the text to show.
+	 *
+	 * @param text The text.
+	 * @param cache Where its layout is (or will be) cached.
+	 * @param style How it's drawn.
+	 */
+	public void setText(CharSequence text, TextLayoutCache cache, TextLayoutCache.Style style) {
+		mText = text == null ? "" : text;
+		mCache = cache;
+		mStyle = style;
+		mLayout = null;
+		requestLayout();
+		invalidate();
+	}
+
+	public CharSequence getText() {
+		return mText;
+	}
+
+	@Override
+	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+		int width = MeasureSpec.getSize(widthMeasureSpec);
+		int textWidth = width - getPaddingLeft() - getPaddingRight();
+		if(mLayout == null || mLayout.getWidth() != textWidth) {
+			mLayout = mCache == null ? null : mCache.obtain(mText, textWidth, mStyle);
+		}
+		int height = getPaddingTop() + getPaddingBottom()
+				+ (mLayout == null ? 0 : mLayout.getHeight());
+		if(MeasureSpec.getMode(heightMeasureSpec) == MeasureSpec.EXACTLY)
+			height = MeasureSpec.getSize(heightMeasureSpec);
+		setMeasuredDimension(width, height);
+	}
+
+	@Override
+	protected void onDraw(Canvas canvas) {
+		if(mLayout == null)
+			return;
+		canvas.save();
+		canvas.translate(getPaddingLeft(), getPaddingTop());
+		mLayout.draw(canvas);
+		canvas.restore();
+	}
+}
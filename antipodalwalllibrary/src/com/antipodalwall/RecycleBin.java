@@ -0,0 +1,82 @@
+package com.antipodalwall;
+
+import java.util.LinkedList;
+
+import android.util.SparseArray;
+import android.view.View;
+
+/**
+ * Views that are no longer on screen and can be handed back to the adapter
+ * as a convertView. Views are kept apart by view type, so an adapter with
+ * several kinds of item is only ever given back a view of the kind it
+ * asked for.
+ */
+class RecycleBin {
+	private final SparseArray<LinkedList<View>> mViews = new SparseArray<LinkedList<View>>();
+	private int mSize;
+
+	/**
+	 * Adds a view to the bin.
+	 *
+	 * @param viewType The adapter's view type for the view.
+	 * @param view The view that can be re-used.
+	 * @return False if the view type can't be recycled
+	 *         (Adapter.IGNORE_ITEM_VIEW_TYPE) and the view was dropped.
+	 */
+	public boolean add(int viewType, View view) {
+		if(viewType < 0)
+			return false;
+		LinkedList<View> views = mViews.get(viewType);
+		if(views == null) {
+			views = new LinkedList<View>();
+			mViews.put(viewType, views);
+		}
+		views.add(view);
+		mSize++;
+		return true;
+	}
+
+	/**
+	 * @param viewType The adapter's view type wanted.
+	 * @return A view of that type, or null if we don't have one.
+	 */
+	public View take(int viewType) {
+		LinkedList<View> views = mViews.get(viewType);
+		if(views == null || views.isEmpty())
+			return null;
+		mSize--;
+		return views.removeFirst();
+	}
+
+	/**
+	 * @return The number of views held of the given type.
+	 */
+	public int size(int viewType) {
+		LinkedList<View> views = mViews.get(viewType);
+		return views == null ? 0 : views.size();
+	}
+
+	/**
+	 * @return The number of views held of all types.
+	 */
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * Drops views, the most plentiful type first, until no more than maxSize
+	 * are left.
+	 */
+	public void trim(int maxSize) {
+		while(mSize > maxSize) {
+			LinkedList<View> largest = null;
+			for(int i = 0; i < mViews.size(); i++) {
+				LinkedList<View> views = mViews.valueAt(i);
+				if(largest == null || views.size() > largest.size())
+					largest = views;
+			}
+			largest.removeLast();
+			mSize--;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package com.antipodalwall;
+
+import java.util.List;
+
+import android.util.SparseArray;
+
+/**
+ * Holds views that have scrolled off screen but are only detached from the
+ * layout, not removed. If the same item scrolls back on screen before the
+ * view expires it can be re-attached as it is - no re-binding, no
+ * re-measuring, and none of the window detach/attach work a full removal
+ * costs.
+ *
+ * Views are keyed by their index into the adapter.
+ */
+class ScrapHeap {
+	private static class Entry {
+		final ColumnView columnView;
+		final long detachedAt;
+
+		Entry(ColumnView columnView, long detachedAt) {
+			this.columnView = columnView;
+			this.detachedAt = detachedAt;
+		}
+	}
+
+	private final SparseArray<Entry> mEntries = new SparseArray<Entry>();
+	private final int mMaxSize;
+
+	/**
+	 * @param maxSize The most views to hold at once.
+	 */
+	public ScrapHeap(int maxSize) {
+		mMaxSize = maxSize;
+	}
+
+	/**
+	 * Adds a detached view to the heap.
+	 *
+	 * @param columnView The view that has been detached.
+	 * @param now The current time, in milliseconds.
+	 * @return The view already held for the same item, which this one
+	 *         replaces, or else the oldest view if the heap was full and it
+	 *         had to be evicted. Null if no view was pushed out. The caller
+	 *         should recycle it.
+	 */
+	public ColumnView put(ColumnView columnView, long now) {
+		ColumnView evicted = null;
+		Entry existing = mEntries.get(columnView.details.index);
+		if(existing != null) {
+			if(existing.columnView != columnView)
+				evicted = existing.columnView;
+		} else if(mEntries.size() >= mMaxSize) {
+			int oldest = 0;
+			for(int i = 1; i < mEntries.size(); i++) {
+				if(mEntries.valueAt(i).detachedAt < mEntries.valueAt(oldest).detachedAt)
+					oldest = i;
+			}
+			evicted = mEntries.valueAt(oldest).columnView;
+			mEntries.removeAt(oldest);
+		}
+		mEntries.put(columnView.details.index, new Entry(columnView, now));
+		return evicted;
+	}
+
+	/**
+	 * Takes the view for an adapter index out of the heap.
+	 *
+	 * @param adapterIndex Index into the adapter.
+	 * @return The detached view, or null if we don't have one.
+	 */
+	public ColumnView take(int adapterIndex) {
+		Entry entry = mEntries.get(adapterIndex);
+		if(entry == null)
+			return null;
+		mEntries.delete(adapterIndex);
+		return entry.columnView;
+	}
+
+	/**
+	 * @param adapterIndex Index into the adapter.
+	 * @return True if the heap holds the view for this index.
+	 */
+	public boolean contains(int adapterIndex) {
+		return mEntries.get(adapterIndex) != null;
+	}
+
+	/**
+	 * Removes every view that was detached before the given time.
+	 *
+	 * @param detachedBefore Views detached before this time have expired.
+	 * @param expired Expired views are added to this list.
+	 */
+	public void collectExpired(long detachedBefore, List<ColumnView> expired) {
+		for(int i = mEntries.size() - 1; i >= 0; i--) {
+			if(mEntries.valueAt(i).detachedAt < detachedBefore) {
+				expired.add(mEntries.valueAt(i).columnView);
+				mEntries.removeAt(i);
+			}
+		}
+	}
+
+	/**
+	 * Removes every view from the heap.
+	 *
+	 * @param removed All views are added to this list.
+	 */
+	public void clear(List<ColumnView> removed) {
+		for(int i = 0; i < mEntries.size(); i++) {
+			removed.add(mEntries.valueAt(i).columnView);
+		}
+		mEntries.clear();
+	}
+
+	public int size() {
+		return mEntries.size();
+	}
+}
@@ -0,0 +1,122 @@
+package com.antipodalwall;
+
+/**
+ * Opt-in timing of the work an {@link AntipodalWallLayout} does while
+ * scrolling, broken down by phase. Attach one with
+ * {@link AntipodalWallLayout#setScrollProfiler(ScrollProfiler)}; when none
+ * is attached the layout doesn't even read the clock.
+ *
+ * Each phase is recorded into a fixed-size {@link LatencyHistogram}, so
+ * profiling costs no allocation per sample and stats can be read (e.g. by
+ * field telemetry) from any thread at any time.
+ */
+public class ScrollProfiler {
+	/** A whole scroll step: remove, skip and fill */
+	public static final int PHASE_SCROLL = 0;
+
+	/** Filling the columns up or down, including the phases below */
+	public static final int PHASE_FILL = 1;
+
+	/** Adapter.getView(...) */
+	public static final int PHASE_BIND = 2;
+
+	/** Measuring a view to fit its column */
+	public static final int PHASE_MEASURE = 3;
+
+	/** Laying out a view */
+	public static final int PHASE_LAYOUT = 4;
+
+	/** Adding (or re-attaching) a view to the layout */
+	public static final int PHASE_ATTACH = 5;
+
+	/** Number of phases */
+	public static final int PHASE_COUNT = 6;
+
+	private static final String[] PHASE_NAMES = {
+		"scroll", "fill", "bind", "measure", "layout", "attach"
+	};
+
+	/** Default threshold for a slow scroll step - one frame at 60fps */
+	public static final long DEFAULT_SLOW_FRAME_NANOS = 16666667L;
+
+	private final LatencyHistogram[] mHistograms = new LatencyHistogram[PHASE_COUNT];
+
+	public ScrollProfiler() {
+		this(DEFAULT_SLOW_FRAME_NANOS);
+	}
+
+	/**
+	 * @param slowFrameNanos Samples of any phase longer than this count as
+	 *            slow.
+	 */
+	public ScrollProfiler(long slowFrameNanos) {
+		for(int i = 0; i < PHASE_COUNT; i++) {
+			mHistograms[i] = new LatencyHistogram(slowFrameNanos);
+		}
+	}
+
+	/**
+	 * Records how long one phase took.
+	 *
+	 * @param phase One of the PHASE_* constants.
+	 * @param nanos The duration, in nanoseconds.
+	 */
+	public void record(int phase, long nanos) {
+		mHistograms[phase].record(nanos);
+	}
+
+	/**
+	 * @param phase One of the PHASE_* constants.
+	 * @return The histogram of that phase's durations.
+	 */
+	public LatencyHistogram getHistogram(int phase) {
+		return mHistograms[phase];
+	}
+
+	/**
+	 * @param phase One of the PHASE_* constants.
+	 * @param fraction The percentile wanted, from 0 to 1 (e.g. 0.99).
+	 * @return The percentile duration in nanoseconds.
+	 */
+	public long getPercentile(int phase, double fraction) {
+		return mHistograms[phase].getPercentile(fraction);
+	}
+
+	/**
+	 * @param phase One of the PHASE_* constants.
+	 * @return The number of samples of that phase over the slow threshold.
+	 */
+	public long getSlowCount(int phase) {
+		return mHistograms[phase].getSlowCount();
+	}
+
+	public static String getPhaseName(int phase) {
+		return PHASE_NAMES[phase];
+	}
+
+	public void reset() {
+		for(LatencyHistogram h : mHistograms) {
+			h.reset();
+		}
+	}
+
+	/**
+	 * @return p50/p95/p99 (in microseconds) and slow counts for every phase.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("ScrollProfiler{");
+		for(int i = 0; i < PHASE_COUNT; i++) {
+			LatencyHistogram h = mHistograms[i];
+			if(i > 0)
+				sb.append(", ");
+			sb.append(PHASE_NAMES[i])
+				.append(": n=").append(h.getCount())
+				.append(" p50=").append(h.getPercentile(0.5) / 1000)
+				.append("us p95=").append(h.getPercentile(0.95) / 1000)
+				.append("us p99=").append(h.getPercentile(0.99) / 1000)
+				.append("us slow=").append(h.getSlowCount());
+		}
+		return sb.append('}').toString();
+	}
+}
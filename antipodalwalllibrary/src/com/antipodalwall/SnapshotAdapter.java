@@ -0,0 +1,283 @@
+package com.antipodalwall;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.BaseAdapter;
+
+/**
+ * An adapter whose items can be changed from any thread - e.g. straight
+ * from a network or database thread - without handing every change over to
+ * the UI thread first.
+ *
+ * Changes go to a working copy of the items, under a lock held only for
+ * the change itself. The wall only ever sees snapshots: once a frame, the
+ * working copy becomes the new snapshot and the changes made to it are
+ * handed to an {@link AntipodalWallLayout} together, so the wall places
+ * items again once, from the earliest change on, rather than after every
+ * change. The copy is made on the first change after each snapshot, so a
+ * frame's changes cost one copy of the list between them.
+ *
+ * When every item has been replaced, or a frame has more changes than are
+ * worth handing over one by one, the wall starts again from the top with
+ * the new items instead. Used with anything other than an
+ * AntipodalWallLayout, each snapshot simply calls notifyDataSetChanged().
+ */
+public abstract class SnapshotAdapter<T> extends BaseAdapter {
+	/** More changes than this in a frame and the wall starts over instead */
+	private static final int MAX_BATCHED_CHANGES = 64;
+
+	private final Object mLock = new Object();
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+	/** The items as of the last snapshot. Only read on the UI thread. */
+	private List<T> mItems;
+
+	/** The snapshot the working copy was copied from; guarded by mLock */
+	private List<T> mPublished;
+
+	/** The items with changes made since the last snapshot, or null if there are none; guarded by mLock */
+	private ArrayList<T> mWorking;
+
+	/** Changes made to mWorking, in order; guarded by mLock */
+	private ArrayList<ItemChange> mChanges = new ArrayList<ItemChange>();
+
+	/** True if every item was replaced since the last snapshot; guarded by mLock */
+	private boolean mReset;
+
+	/** True if a snapshot has been asked for and not taken yet; guarded by mLock */
+	private boolean mSnapshotScheduled;
+
+	/** The wall showing us, set by the wall itself */
+	private AntipodalWallLayout mWall;
+
+	public SnapshotAdapter() {
+		this(null);
+	}
+
+	/**
+	 * @param items The items to start with, or null for none.
+	 */
+	public SnapshotAdapter(Collection<? extends T> items) {
+		mItems = items == null ? new ArrayList<T>() : new ArrayList<T>(items);
+		mPublished = mItems;
+	}
+
+	/**
+	 * Adds an item at the end. Can be called from any thread.
+	 */
+	public void add(T item) {
+		synchronized(mLock) {
+			insert(getWorking().size(), item);
+		}
+	}
+
+	/**
+	 * Adds items at the end. Can be called from any thread.
+	 */
+	public void addAll(Collection<? extends T> items) {
+		synchronized(mLock) {
+			insertAll(getWorking().size(), items);
+		}
+	}
+
+	/**
+	 * Inserts an item. Can be called from any thread.
+	 *
+	 * @param position Where to insert it, in the items with every change so
+	 *            far made.
+	 */
+	public void insert(int position, T item) {
+		synchronized(mLock) {
+			getWorking().add(position, item);
+			record(ItemChange.insert(position, 1));
+		}
+	}
+
+	/**
+	 * Inserts items. Can be called from any thread.
+	 */
+	public void insertAll(int position, Collection<? extends T> items) {
+		if(items.isEmpty())
+			return;
+		synchronized(mLock) {
+			getWorking().addAll(position, items);
+			record(ItemChange.insert(position, items.size()));
+		}
+	}
+
+	/**
+	 * Replaces an item, e.g. after it has been edited. Can be called from
+	 * any thread.
+	 */
+	public void set(int position, T item) {
+		synchronized(mLock) {
+			getWorking().set(position, item);
+			record(ItemChange.change(position, 1));
+		}
+	}
+
+	/**
+	 * Removes an item. Can be called from any thread.
+	 */
+	public void remove(int position) {
+		removeRange(position, 1);
+	}
+
+	/**
+	 * Removes a run of items. Can be called from any thread.
+	 */
+	public void removeRange(int position, int count) {
+		if(count <= 0)
+			return;
+		synchronized(mLock) {
+			getWorking().subList(position, position + count).clear();
+			record(ItemChange.remove(position, count));
+		}
+	}
+
+	/**
+	 * Moves an item. Can be called from any thread.
+	 */
+	public void move(int fromPosition, int toPosition) {
+		if(fromPosition == toPosition)
+			return;
+		synchronized(mLock) {
+			ArrayList<T> working = getWorking();
+			working.add(toPosition, working.remove(fromPosition));
+			record(ItemChange.move(fromPosition, toPosition));
+		}
+	}
+
+	/**
+	 * Replaces every item, e.g. after a refresh. The wall starts over with
+	 * the new items. Can be called from any thread.
+	 */
+	public void replaceAll(Collection<? extends T> items) {
+		synchronized(mLock) {
+			mWorking = new ArrayList<T>(items);
+			mChanges.clear();
+			mReset = true;
+			scheduleSnapshot();
+		}
+	}
+
+	/**
+	 * @return The number of items with every change so far made, whether
+	 *         or not the wall has seen them yet. Can be called from any
+	 *         thread.
+	 */
+	public int getLatestCount() {
+		synchronized(mLock) {
+			return mWorking != null ? mWorking.size() : mPublished.size();
+		}
+	}
+
+	/**
+	 * Takes a snapshot of the items straight away, rather than on the next
+	 * frame, and hands the changes to the wall. Must be called on the UI
+	 * thread. Tests can call it after making changes to see their effect
+	 * without waiting for a frame.
+	 */
+	public void applyPendingChanges() {
+		List<T> snapshot;
+		ArrayList<ItemChange> changes;
+		boolean reset;
+		synchronized(mLock) {
+			mSnapshotScheduled = false;
+			if(mWorking == null)
+				return;
+			snapshot = Collections.unmodifiableList(mWorking);
+			mPublished = snapshot;
+			mWorking = null;
+			changes = mChanges;
+			mChanges = new ArrayList<ItemChange>();
+			reset = mReset;
+			mReset = false;
+		}
+		mItems = snapshot;
+		if(mWall == null) {
+			notifyDataSetChanged();
+		} else if(reset || changes.size() > MAX_BATCHED_CHANGES) {
+			// notifyDataSetChanged() would keep the views placed for the
+			// old items, at indexes that may now be past the end.
+			mWall.resetItems();
+		} else {
+			mWall.notifyItemChanges(changes);
+		}
+	}
+
+	/**
+	 * @return The number of items in the current snapshot.
+	 */
+	@Override
+	public int getCount() {
+		return mItems.size();
+	}
+
+	/**
+	 * @return The item at this position in the current snapshot.
+	 */
+	@Override
+	public T getItem(int position) {
+		return mItems.get(position);
+	}
+
+	@Override
+	public long getItemId(int position) {
+		return position;
+	}
+
+	/**
+	 * Called by the wall when it starts or stops showing us.
+	 */
+	void setWall(AntipodalWallLayout wall) {
+		mWall = wall;
+	}
+
+	/** The working copy, made from the last snapshot if need be. Call with mLock held. */
+	private ArrayList<T> getWorking() {
+		if(mWorking == null)
+			mWorking = new ArrayList<T>(mPublished);
+		return mWorking;
+	}
+
+	/** Call with mLock held. */
+	private void record(ItemChange change) {
+		if(!mReset) {
+			int last = mChanges.size() - 1;
+			if(last < 0 || !mChanges.get(last).merge(change))
+				mChanges.add(change);
+		}
+		scheduleSnapshot();
+	}
+
+	/** Call with mLock held. */
+	private void scheduleSnapshot() {
+		if(!mSnapshotScheduled) {
+			mSnapshotScheduled = true;
+			mHandler.post(mScheduleOnFrame);
+		}
+	}
+
+	/** On the UI thread: waits for the start of the next frame */
+	private final Runnable mScheduleOnFrame = new Runnable() {
+		public void run() {
+			if(mWall != null) {
+				mWall.postOnNextFrame(mTakeSnapshot);
+			} else {
+				applyPendingChanges();
+			}
+		}
+	};
+
+	private final Runnable mTakeSnapshot = new Runnable() {
+		public void run() {
+			applyPendingChanges();
+		}
+	};
+}
@@ -0,0 +1,182 @@
+package com.antipodalwall;
+
+import java.util.ArrayList;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+/**
+ * Screen-sized bitmaps of parts of the wall that have been rendered
+ * recently, each remembered with the offset it was taken at. While a fling
+ * is too fast for binding real views to be worth it, the wall draws these
+ * instead.
+ *
+ * Kept within a memory budget - the least recently used tiles are dropped
+ * to make room for new ones. One dropped bitmap is kept back as a spare,
+ * and the next tile is drawn into it rather than into a newly allocated
+ * screenful.
+ */
+class SnapshotTiles {
+	private static class Tile {
+		int top;
+		final Bitmap bitmap;
+		final int bytes;
+
+		Tile(int top, Bitmap bitmap) {
+			this.top = top;
+			this.bitmap = bitmap;
+			this.bytes = bitmap.getRowBytes() * bitmap.getHeight();
+		}
+	}
+
+	/** Least recently used first */
+	private final ArrayList<Tile> mTiles = new ArrayList<Tile>();
+	private int mBudgetBytes;
+	private int mBytes;
+
+	/** A dropped tile's bitmap, to draw the next one into; may be null */
+	private Bitmap mSpare;
+
+	/**
+	 * @param budgetBytes Most memory the bitmaps may use.
+	 */
+	public SnapshotTiles(int budgetBytes) {
+		mBudgetBytes = budgetBytes;
+	}
+
+	public void setBudget(int budgetBytes) {
+		mBudgetBytes = budgetBytes;
+		trim(mBudgetBytes);
+	}
+
+	/**
+	 * @return True if a tile of this size would fit in the budget at all.
+	 */
+	public boolean fits(int width, int height) {
+		// Snapshots are ARGB_8888 - four bytes a pixel.
+		return width > 0 && height > 0 && (long) width * height * 4 <= mBudgetBytes;
+	}
+
+	/**
+	 * @return A bitmap of this size to draw a new tile into, cleared, or
+	 *         null if there's no spare one and a new one is needed.
+	 */
+	public Bitmap obtainBitmap(int width, int height) {
+		Bitmap bitmap = mSpare;
+		mSpare = null;
+		if(bitmap == null)
+			return null;
+		if(bitmap.getWidth() != width || bitmap.getHeight() != height) {
+			bitmap.recycle();
+			return null;
+		}
+		bitmap.eraseColor(0);
+		return bitmap;
+	}
+
+	/**
+	 * @return True if there's already a tile taken at this offset.
+	 */
+	public boolean contains(int top) {
+		for(int i = 0; i < mTiles.size(); i++) {
+			if(mTiles.get(i).top == top)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Adds a tile. Older tiles that it covers, and the least recently used
+	 * ones if there isn't room, are dropped.
+	 *
+	 * @param top Offset of the top of the tile in the wall.
+	 * @param bitmap The tile.
+	 */
+	public void put(int top, Bitmap bitmap) {
+		Tile tile = new Tile(top, bitmap);
+		for(int i = mTiles.size() - 1; i >= 0; i--) {
+			Tile old = mTiles.get(i);
+			// Mostly overlapped by the new tile - no use keeping it.
+			if(Math.abs(old.top - top) < bitmap.getHeight() / 2)
+				remove(i);
+		}
+		trim(mBudgetBytes - tile.bytes);
+		mTiles.add(tile);
+		mBytes += tile.bytes;
+	}
+
+	/**
+	 * Draws every tile that overlaps the visible part of the wall, most
+	 * recent on top.
+	 *
+	 * @param canvas The canvas to draw on, in the wall's content coordinates.
+	 * @param top Offset of the top of the visible part of the wall.
+	 * @param bottom Offset of the bottom of the visible part.
+	 * @param shift Added to each tile's offset to get where to draw it.
+	 */
+	public void draw(Canvas canvas, int top, int bottom, int shift) {
+		for(int i = 0; i < mTiles.size(); i++) {
+			Tile tile = mTiles.get(i);
+			if(tile.top < bottom && tile.top + tile.bitmap.getHeight() > top)
+				canvas.drawBitmap(tile.bitmap, 0, tile.top + shift, null);
+		}
+	}
+
+	/**
+	 * Moves every tile, e.g. because the wall's coordinates have been
+	 * rebased.
+	 *
+	 * @param delta Added to each tile's offset.
+	 */
+	public void offset(int delta) {
+		for(int i = 0; i < mTiles.size(); i++) {
+			mTiles.get(i).top += delta;
+		}
+	}
+
+	/**
+	 * Drops every tile, e.g. because the wall's contents have moved. A
+	 * spare bitmap is still kept.
+	 */
+	public void clear() {
+		trim(0);
+	}
+
+	/**
+	 * Drops every tile and the spare bitmap too, e.g. when memory is low.
+	 */
+	public void release() {
+		clear();
+		if(mSpare != null) {
+			mSpare.recycle();
+			mSpare = null;
+		}
+	}
+
+	/**
+	 * @return Memory used by the tiles and the spare bitmap.
+	 */
+	public int getByteCount() {
+		return mBytes + (mSpare != null ? mSpare.getRowBytes() * mSpare.getHeight() : 0);
+	}
+
+	public int size() {
+		return mTiles.size();
+	}
+
+	private void trim(int maxBytes) {
+		while(mBytes > maxBytes && !mTiles.isEmpty()) {
+			remove(0);
+		}
+	}
+
+	private void remove(int index) {
+		Tile tile = mTiles.remove(index);
+		mBytes -= tile.bytes;
+		if(mSpare == null) {
+			mSpare = tile.bitmap;
+		} else {
+			tile.bitmap.recycle();
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package com.antipodalwall;
+
+import java.util.PriorityQueue;
+
+/**
+ * A {@link WallExecutor} for tests: nothing runs on another thread, and
+ * nothing runs until asked. {@link #runPending()} runs the queued tasks on
+ * the calling thread, in lane order, so a test decides exactly when
+ * background work happens and can check the order it happened in.
+ *
+ * Results are still handed to the wall to deliver on its next frame.
+ */
+public class SynchronousWallExecutor implements WallExecutor {
+	private final PriorityQueue<WallTask> mQueue = new PriorityQueue<WallTask>();
+	private long mSequence;
+	private boolean mRunImmediately;
+	private boolean mShutdown;
+
+	/**
+	 * @param runImmediately
+	 *            True to run each task as soon as it's queued, rather than
+	 *            waiting for {@link #runPending()}.
+	 */
+	public void setRunImmediately(boolean runImmediately) {
+		mRunImmediately = runImmediately;
+	}
+
+	public synchronized void execute(WallTask task) {
+		if(mShutdown)
+			return;
+		if(mRunImmediately) {
+			task.run();
+		} else {
+			mQueue.add(task);
+		}
+	}
+
+	public synchronized boolean remove(WallTask task) {
+		return mQueue.remove(task);
+	}
+
+	public synchronized long nextSequence() {
+		return mSequence++;
+	}
+
+	public synchronized void shutdown() {
+		mShutdown = true;
+		mQueue.clear();
+	}
+
+	/**
+	 * @return The number of tasks waiting to run.
+	 */
+	public synchronized int getPendingCount() {
+		return mQueue.size();
+	}
+
+	/**
+	 * Runs every queued task, including any they queue, on this thread.
+	 *
+	 * @return The number of tasks run.
+	 */
+	public synchronized int runPending() {
+		int count = 0;
+		WallTask task;
+		while((task = mQueue.poll()) != null) {
+			task.run();
+			count++;
+		}
+		return count;
+	}
+}
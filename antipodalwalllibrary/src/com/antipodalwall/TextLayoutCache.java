@@ -0,0 +1,225 @@
+package com.antipodalwall;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import android.text.Layout;
+import android.text.Spanned;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+
+/**
+ * Builds text layouts for text cards ahead of time, on a background thread,
+ * so that measuring a card while the wall scrolls doesn't have to lay its
+ * text out. Layouts are cached by text, width and {@link Style}.
+ *
+ * Typical use: as the wall scrolls, e.g. from
+ * {@link AntipodalWallLayout.OnScrollListener#onScroll}, call
+ * {@link #prefetch(List, int, Style)} with the text of the cards on screen
+ * and a screenful or two either side, nearest first, and the width the
+ * text will have (the wall's {@link AntipodalWallLayout#getColumnWidth()}
+ * less the card's padding). Keep the window well inside the cache's size,
+ * or the layouts for the screen are evicted to make room for ones further
+ * away. Bind cards with {@link PrecomputedTextView}, which takes its height
+ * straight from the cached layout, and report sizes to the wall from
+ * {@link #getHeight(CharSequence, int, Style)} through an
+ * {@link ItemSizeSource}.
+ *
+ * Text is matched by its characters. Spanned text also has to carry the
+ * same span objects over the same ranges, so keep the styled text (or at
+ * least its spans) you prefetch, and bind with the same.
+ */
+public class TextLayoutCache {
+	/** Default number of layouts kept */
+	public static final int DEFAULT_MAX_ENTRIES = 256;
+
+	/**
+	 * How text is drawn: the paint and line spacing. Layouts are only
+	 * shared between identical Style objects, so create one per kind of
+	 * card and re-use it.
+	 */
+	public static final class Style {
+		final TextPaint paint;
+		final float spacingMultiplier;
+		final float spacingExtra;
+
+		/**
+		 * @param paint The paint to lay text out with. Copied, so it's safe
+		 *            to use from the background thread.
+		 * @param spacingMultiplier Line spacing multiplier, usually 1.
+		 * @param spacingExtra Extra line spacing in pixels, usually 0.
+		 */
+		public Style(TextPaint paint, float spacingMultiplier, float spacingExtra) {
+			this.paint = new TextPaint(paint);
+			this.spacingMultiplier = spacingMultiplier;
+			this.spacingExtra = spacingExtra;
+		}
+	}
+
+	private static class Key {
+		final String text;
+		final Object[] spans;
+		final int[] spanRanges;
+		final int width;
+		final Style style;
+
+		Key(CharSequence text, int width, Style style) {
+			// CharSequence.equals(...) is identity for most Spanned text,
+			// so match on the characters and the spans separately.
+			this.text = text.toString();
+			if(text instanceof Spanned) {
+				Spanned spanned = (Spanned) text;
+				spans = spanned.getSpans(0, text.length(), Object.class);
+				spanRanges = new int[spans.length * 3];
+				for(int i = 0; i < spans.length; i++) {
+					spanRanges[i * 3] = spanned.getSpanStart(spans[i]);
+					spanRanges[i * 3 + 1] = spanned.getSpanEnd(spans[i]);
+					spanRanges[i * 3 + 2] = spanned.getSpanFlags(spans[i]);
+				}
+			} else {
+				spans = null;
+				spanRanges = null;
+			}
+			this.width = width;
+			this.style = style;
+		}
+
+		private boolean hasSpans() {
+			return spans != null && spans.length > 0;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Key))
+				return false;
+			Key other = (Key) o;
+			if(width != other.width || style != other.style || !text.equals(other.text))
+				return false;
+			if(!hasSpans() || !other.hasSpans())
+				return hasSpans() == other.hasSpans();
+			return Arrays.equals(spans, other.spans) && Arrays.equals(spanRanges, other.spanRanges);
+		}
+
+		@Override
+		public int hashCode() {
+			return (text.hashCode() * 31 + width) * 31 + System.identityHashCode(style);
+		}
+	}
+
+	private static class Cache extends LinkedHashMap<Key, Layout> {
+		private static final long serialVersionUID = 1L;
+		private final int mMaxSize;
+
+		Cache(int maxSize) {
+			super(16, 0.75f, true);
+			mMaxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Layout> eldest) {
+			return size() > mMaxSize;
+		}
+	}
+
+	private final Cache mCache;
+	private final int mMaxEntries;
+	private final Executor mExecutor;
+
+	public TextLayoutCache() {
+		this(DEFAULT_MAX_ENTRIES, null);
+	}
+
+	/**
+	 * @param maxEntries Number of layouts to keep.
+	 * @param executor Builds layouts ahead of time, e.g. the wall's
+	 *            {@link AntipodalWallLayout#getLaneExecutor(int)}, or null
+	 *            for the speculative lane of the executor walls share by
+	 *            default.
+	 */
+	public TextLayoutCache(int maxEntries, Executor executor) {
+		mCache = new Cache(maxEntries);
+		mMaxEntries = maxEntries;
+		mExecutor = executor != null ? executor
+				: AntipodalWallLayout.getDefaultLaneExecutor(WallExecutor.LANE_SPECULATIVE);
+	}
+
+	/**
+	 * @return The cached layout, or null if it hasn't been built yet.
+	 */
+	public Layout get(CharSequence text, int width, Style style) {
+		synchronized(mCache) {
+			return mCache.get(new Key(text, width, style));
+		}
+	}
+
+	/**
+	 * @return The cached layout, building it now (on this thread) if it
+	 *         hasn't been built yet.
+	 */
+	public Layout obtain(CharSequence text, int width, Style style) {
+		Layout layout = get(text, width, style);
+		if(layout == null) {
+			layout = build(text, width, style);
+			put(text, width, style, layout);
+		}
+		return layout;
+	}
+
+	/**
+	 * @return The height of the cached layout, or -1 if it hasn't been
+	 *         built yet.
+	 */
+	public int getHeight(CharSequence text, int width, Style style) {
+		Layout layout = get(text, width, style);
+		return layout == null ? -1 : layout.getHeight();
+	}
+
+	/**
+	 * Builds layouts for some text in the background, skipping any
+	 * already cached. No more texts than the cache holds are built, so a
+	 * prefetch never evicts its own layouts.
+	 *
+	 * @param texts The text of each card, nearest the screen first.
+	 * @param width The width the text will be laid out in.
+	 * @param style How the text is drawn.
+	 */
+	public void prefetch(final List<? extends CharSequence> texts, final int width,
+			final Style style) {
+		mExecutor.execute(new Runnable() {
+			public void run() {
+				int count = Math.min(texts.size(), mMaxEntries);
+				for(int i = 0; i < count; i++) {
+					CharSequence text = texts.get(i);
+					if(get(text, width, style) == null)
+						put(text, width, style, build(text, width, style));
+				}
+			}
+		});
+	}
+
+	/**
+	 * Forgets every cached layout, e.g. when the column width changes.
+	 */
+	public void clear() {
+		synchronized(mCache) {
+			mCache.clear();
+		}
+	}
+
+	private void put(CharSequence text, int width, Style style, Layout layout) {
+		synchronized(mCache) {
+			mCache.put(new Key(text, width, style), layout);
+		}
+	}
+
+	private static Layout build(CharSequence text, int width, Style style) {
+		// A paint can't measure text on two threads at once.
+		synchronized(style) {
+			return new StaticLayout(text, style.paint, Math.max(width, 0),
+					Layout.Alignment.ALIGN_NORMAL, style.spacingMultiplier, style.spacingExtra, true);
+		}
+	}
+}
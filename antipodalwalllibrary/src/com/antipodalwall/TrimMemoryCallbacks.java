@@ -0,0 +1,33 @@
+package com.antipodalwall;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+
+/**
+ * Forwards memory trim callbacks to an {@link AntipodalWallLayout}. Only
+ * registered on API 14+, where ComponentCallbacks2 exists - on older
+ * platforms call {@link AntipodalWallLayout#onTrimMemory(int)} from your
+ * Activity.onLowMemory() instead.
+ */
+class TrimMemoryCallbacks implements ComponentCallbacks2 {
+	private final AntipodalWallLayout mWall;
+
+	public TrimMemoryCallbacks(AntipodalWallLayout wall) {
+		mWall = wall;
+	}
+
+	@Override
+	public void onTrimMemory(int level) {
+		mWall.onTrimMemory(level);
+	}
+
+	@Override
+	public void onLowMemory() {
+		mWall.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+	}
+
+	@Override
+	public void onConfigurationChanged(Configuration newConfig) {
+		// Nothing to do - the layout handles size changes when measured.
+	}
+}
@@ -0,0 +1,45 @@
+package com.antipodalwall;
+
+/**
+ * Runs the background half of {@link WallTask}s for an
+ * {@link AntipodalWallLayout}. Tasks are taken in lane order - everything
+ * queued in {@link #LANE_VISIBLE} before anything in
+ * {@link #LANE_PREFETCH}, and so on - then oldest first.
+ *
+ * The wall uses a shared {@link LanedWallExecutor} unless given another
+ * with {@link AntipodalWallLayout#setBackgroundExecutor(WallExecutor)};
+ * tests can give it a {@link SynchronousWallExecutor}.
+ */
+public interface WallExecutor {
+	/** Work for items on screen */
+	public static final int LANE_VISIBLE = 0;
+
+	/** Work for items about to come on screen */
+	public static final int LANE_PREFETCH = 1;
+
+	/** Work that may well never be needed, e.g. warming caches */
+	public static final int LANE_SPECULATIVE = 2;
+
+	/**
+	 * Queues a task. Its sequence number has been set, so it orders
+	 * correctly with {@link WallTask#compareTo(WallTask)}.
+	 */
+	public void execute(WallTask task);
+
+	/**
+	 * Takes a task off the queue if it hasn't started.
+	 *
+	 * @return True if it was removed before it started.
+	 */
+	public boolean remove(WallTask task);
+
+	/**
+	 * @return The next sequence number, for ordering tasks within a lane.
+	 */
+	public long nextSequence();
+
+	/**
+	 * Stops running tasks. The executor can't be used afterwards.
+	 */
+	public void shutdown();
+}
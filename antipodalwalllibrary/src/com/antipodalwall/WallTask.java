@@ -0,0 +1,105 @@
+package com.antipodalwall;
+
+/**
+ * A piece of background work for an {@link AntipodalWallLayout}: the
+ * {@link #doInBackground()} half runs on a {@link WallExecutor} in one of
+ * its lanes, and the result is handed to {@link #onResult(Object)} on the UI
+ * thread, batched with every other result that arrived in the same frame.
+ *
+ * Start one with {@link AntipodalWallLayout#runInBackground(WallTask)}. It
+ * is cancelled if the wall is detached from its window before the result
+ * is delivered. A task can only be run once.
+ */
+public abstract class WallTask implements Runnable, Comparable<WallTask> {
+	private final int mLane;
+	private volatile boolean mCancelled;
+	private volatile Object mResult;
+
+	/** Order within a lane, set by the executor */
+	long sequence;
+
+	/** The wall to deliver the result to, set when the task is started */
+	AntipodalWallLayout wall;
+
+	/**
+	 * @param lane One of WallExecutor.LANE_*.
+	 */
+	protected WallTask(int lane) {
+		mLane = lane;
+	}
+
+	/**
+	 * Does the work, on a background thread (or the calling thread, with a
+	 * {@link SynchronousWallExecutor}). Long work should check
+	 * {@link #isCancelled()} now and then.
+	 *
+	 * @return The result to hand to {@link #onResult(Object)}.
+	 */
+	protected abstract Object doInBackground();
+
+	/**
+	 * Called on the UI thread with the result, unless the task was
+	 * cancelled first.
+	 */
+	protected void onResult(Object result) {
+	}
+
+	/**
+	 * Called on the UI thread if the task is cancelled before its result is
+	 * delivered.
+	 */
+	protected void onCancelled() {
+	}
+
+	public int getLane() {
+		return mLane;
+	}
+
+	public boolean isCancelled() {
+		return mCancelled;
+	}
+
+	/**
+	 * Cancels the task. If it hasn't started it never will, and its result
+	 * won't be delivered either way. Call on the UI thread.
+	 */
+	public void cancel() {
+		if(mCancelled)
+			return;
+		if(wall != null) {
+			wall.cancelBackgroundTask(this);
+		} else {
+			mCancelled = true;
+			onCancelled();
+		}
+	}
+
+	/**
+	 * Runs the background half. Called by the executor.
+	 */
+	public final void run() {
+		if(mCancelled)
+			return;
+		mResult = doInBackground();
+		if(!mCancelled && wall != null)
+			wall.onBackgroundTaskFinished(this);
+	}
+
+	/**
+	 * Visible lanes first, then speculative ones; oldest first within a
+	 * lane.
+	 */
+	public int compareTo(WallTask other) {
+		if(mLane != other.mLane)
+			return mLane < other.mLane ? -1 : 1;
+		return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+	}
+
+	void markCancelled() {
+		mCancelled = true;
+	}
+
+	Object getResult() {
+		return mResult;
+	}
+}
@@ -0,0 +1,360 @@
+package com.antipodalwall;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.SparseArray;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+
+/**
+ * An adapter over a {@link WindowedDataSource} too big (or too slow) to
+ * load up front, such as an offline feed in SQLite.
+ *
+ * Rows are loaded a page at a time on a background executor. Only a window
+ * of pages either side of the items on screen is kept; pages that fall out
+ * of the window are dropped, and the pages next to the window are loaded
+ * before the wall gets to them.
+ *
+ * Until its row arrives an item is bound with a null row, so
+ * {@link #bindView(int, Object, View, ViewGroup)} should show a
+ * placeholder - sized like an average item, since that is what the wall
+ * assumes for items it knows nothing about. When the row arrives the
+ * placeholder is bound again in place, if the wall is still showing it,
+ * and the wall is told the sizes of the page's items all at once.
+ */
+public abstract class WindowedAdapter<T> extends BaseAdapter implements ItemSizeSource {
+	private static final String TAG = "AntipodalWall";
+
+	/** Default number of rows loaded at once */
+	public static final int DEFAULT_PAGE_SIZE = 50;
+
+	/** Default number of pages kept either side of the current page */
+	public static final int DEFAULT_WINDOW_PAGES = 2;
+
+	private final WindowedDataSource<T> mDataSource;
+	private final int mPageSize;
+	private final int mWindowPages;
+	private final Executor mExecutor;
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+	/** Loaded pages of rows, by page number */
+	private final SparseArray<List<T>> mPages = new SparseArray<List<T>>();
+
+	/** Pages being loaded right now */
+	private final HashSet<Integer> mLoadingPages = new HashSet<Integer>();
+
+	/**
+	 * Views bound without a row, and the position they were bound for. Weak,
+	 * since the wall drops views without telling us.
+	 */
+	private final WeakHashMap<View, Integer> mPlaceholders = new WeakHashMap<View, Integer>();
+
+	private int mCount;
+	private int mCurrentPage = -1;
+
+	/** Bumped on refresh, so loads started before it are ignored */
+	private int mGeneration;
+
+	/** The wall showing us, set by the wall itself */
+	private AntipodalWallLayout mWall;
+
+	/**
+	 * Creates an adapter with the default page and window sizes, loading in
+	 * the prefetch lane of the wall's executor.
+	 *
+	 * @param dataSource Where the rows come from.
+	 */
+	public WindowedAdapter(WindowedDataSource<T> dataSource) {
+		this(dataSource, DEFAULT_PAGE_SIZE, DEFAULT_WINDOW_PAGES, null);
+	}
+
+	/**
+	 * @param dataSource Where the rows come from.
+	 * @param pageSize Number of rows loaded at once.
+	 * @param windowPages Number of pages kept either side of the current
+	 *            one.
+	 * @param executor Runs the loads, or null for the prefetch lane of the
+	 *            wall's executor (of the executor walls share by default,
+	 *            until the adapter is given to a wall). Tests can pass one
+	 *            that runs loads straight away on the calling thread.
+	 */
+	public WindowedAdapter(WindowedDataSource<T> dataSource, int pageSize, int windowPages,
+			Executor executor) {
+		mDataSource = dataSource;
+		mPageSize = pageSize < 1 ? 1 : pageSize;
+		mWindowPages = windowPages < 0 ? 0 : windowPages;
+		mExecutor = executor;
+		refresh();
+	}
+
+	/**
+	 * Binds the view for an item.
+	 *
+	 * @param position Index of the item.
+	 * @param row The item's row, or null if it hasn't loaded yet.
+	 * @param convertView A view to re-use, or null.
+	 * @param parent The wall.
+	 * @return The bound view, measured as for any adapter given to
+	 *         {@link AntipodalWallLayout}. When binding a row into a
+	 *         placeholder this must be convertView itself.
+	 */
+	protected abstract View bindView(int position, T row, View convertView, ViewGroup parent);
+
+	/**
+	 * Override to tell the wall how big items are before they are bound.
+	 *
+	 * @return The original width of the row's item, or 0 if not known.
+	 */
+	protected int getRowWidth(T row) {
+		return 0;
+	}
+
+	/**
+	 * @return The original height of the row's item, or 0 if not known.
+	 */
+	protected int getRowHeight(T row) {
+		return 0;
+	}
+
+	/**
+	 * Forgets every loaded row and reloads the count, e.g. after the
+	 * database has changed.
+	 */
+	public void refresh() {
+		final int generation = ++mGeneration;
+		mPages.clear();
+		mLoadingPages.clear();
+		execute(new Runnable() {
+			public void run() {
+				final int count = mDataSource.getCount();
+				deliver(new Runnable() {
+					public void run() {
+						if(generation != mGeneration)
+							return;
+						mCount = count;
+						notifyDataSetChanged();
+						if(mCurrentPage >= 0)
+							loadAround(mCurrentPage);
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Stops loading rows and drops the ones loaded.
+	 */
+	public void close() {
+		mGeneration++;
+		mPages.clear();
+		mLoadingPages.clear();
+		mPlaceholders.clear();
+	}
+
+	@Override
+	public int getCount() {
+		return mCount;
+	}
+
+	/**
+	 * @return The row at this position, or null if it isn't loaded.
+	 */
+	@Override
+	public T getItem(int position) {
+		List<T> page = mPages.get(position / mPageSize);
+		if(page == null)
+			return null;
+		int index = position % mPageSize;
+		return index < page.size() ? page.get(index) : null;
+	}
+
+	@Override
+	public long getItemId(int position) {
+		return position;
+	}
+
+	@Override
+	public View getView(int position, View convertView, ViewGroup parent) {
+		if(convertView != null)
+			mPlaceholders.remove(convertView);
+		// The wall moves the window to what's on screen; it also binds items
+		// off screen, e.g. ahead of a fling, which mustn't drag it along.
+		if(mWall == null || mCurrentPage < 0)
+			moveWindow(position / mPageSize);
+		T row = getItem(position);
+		View view = bindView(position, row, convertView, parent);
+		if(row == null)
+			mPlaceholders.put(view, position);
+		return view;
+	}
+
+	public boolean hasItemSize(int position) {
+		T row = getItem(position);
+		return row != null && getRowWidth(row) > 0 && getRowHeight(row) > 0;
+	}
+
+	public int getItemWidth(int position) {
+		return getRowWidth(getItem(position));
+	}
+
+	public int getItemHeight(int position) {
+		return getRowHeight(getItem(position));
+	}
+
+	/**
+	 * Called by the wall when it starts or stops showing us.
+	 */
+	void setWall(AntipodalWallLayout wall) {
+		mWall = wall;
+	}
+
+	/**
+	 * Called by the wall when the items on screen change, once a frame at
+	 * most. Centres the window on them.
+	 */
+	void onVisibleRangeChanged(int first, int last) {
+		if(first < 0 || last < first)
+			return;
+		moveWindow((first + last) / 2 / mPageSize);
+	}
+
+	/**
+	 * Re-centres the window on a page, dropping pages that fall out of it
+	 * and loading the ones that come into it.
+	 */
+	private void moveWindow(int page) {
+		if(page == mCurrentPage)
+			return;
+		mCurrentPage = page;
+		for(int i = mPages.size() - 1; i >= 0; i--) {
+			if(Math.abs(mPages.keyAt(i) - page) > mWindowPages)
+				mPages.removeAt(i);
+		}
+		loadAround(page);
+	}
+
+	private void execute(Runnable command) {
+		if(mExecutor != null) {
+			mExecutor.execute(command);
+		} else if(mWall != null) {
+			mWall.getLaneExecutor(WallExecutor.LANE_PREFETCH).execute(command);
+		} else {
+			AntipodalWallLayout.getDefaultLaneExecutor(WallExecutor.LANE_PREFETCH).execute(command);
+		}
+	}
+
+	/** Loads the current page first, then outwards from it */
+	private void loadAround(int page) {
+		for(int distance = 0; distance <= mWindowPages; distance++) {
+			loadPage(page + distance);
+			if(distance > 0)
+				loadPage(page - distance);
+		}
+	}
+
+	private void loadPage(final int page) {
+		if(page < 0 || page * mPageSize >= mCount || mPages.get(page) != null
+				|| mLoadingPages.contains(page))
+			return;
+		mLoadingPages.add(page);
+		final int generation = mGeneration;
+		execute(new Runnable() {
+			public void run() {
+				List<T> rows;
+				try {
+					rows = mDataSource.loadRows(page * mPageSize, mPageSize);
+				} catch(RuntimeException e) {
+					Log.w(TAG, "Failed to load rows for page " + page, e);
+					rows = null;
+				}
+				final List<T> loaded = rows;
+				deliver(new Runnable() {
+					public void run() {
+						onPageLoaded(generation, page, loaded);
+					}
+				});
+			}
+		});
+	}
+
+	private void onPageLoaded(int generation, int page, List<T> rows) {
+		if(generation != mGeneration)
+			return;
+		mLoadingPages.remove(page);
+		if(rows == null || Math.abs(page - mCurrentPage) > mWindowPages)
+			return;
+		mPages.put(page, rows);
+		int start = page * mPageSize;
+		int end = start + rows.size();
+
+		// Placeholders the wall is showing get their real row bound in
+		// place. The rest are scrap or waiting to be re-used, and will be
+		// bound again anyway.
+		ArrayList<View> dropped = new ArrayList<View>();
+		SparseArray<View> rebound = new SparseArray<View>();
+		for(Map.Entry<View, Integer> entry : mPlaceholders.entrySet()) {
+			int position = entry.getValue();
+			if(position < start || position >= end)
+				continue;
+			View placeholder = entry.getKey();
+			dropped.add(placeholder);
+			if(mWall == null || placeholder.getParent() != mWall)
+				continue;
+			View view = bindView(position, getItem(position), placeholder, mWall);
+			if(view != placeholder) {
+				Log.w(TAG, "bindView(...) didn't re-use the placeholder for position " + position);
+			} else {
+				rebound.put(position, view);
+			}
+		}
+		for(View v : dropped) {
+			mPlaceholders.remove(v);
+		}
+		if(mWall == null)
+			return;
+
+		// The wall places the page's items again once, with every size.
+		int[] positions = new int[rows.size()];
+		int[] widths = new int[positions.length];
+		int[] heights = new int[positions.length];
+		int count = 0;
+		for(int position = start; position < end; position++) {
+			View view = rebound.get(position);
+			int width;
+			int height;
+			if(view != null) {
+				width = view.getMeasuredWidth();
+				height = view.getMeasuredHeight();
+			} else {
+				T row = rows.get(position - start);
+				width = getRowWidth(row);
+				height = getRowHeight(row);
+				if(width <= 0 || height <= 0)
+					continue;
+			}
+			positions[count] = position;
+			widths[count] = width;
+			heights[count] = height;
+			count++;
+		}
+		mWall.notifyItemSizesChanged(positions, widths, heights, count);
+	}
+
+	/** Runs on the UI thread - straight away if we're already on it */
+	private void deliver(Runnable runnable) {
+		if(Looper.myLooper() == Looper.getMainLooper()) {
+			runnable.run();
+		} else {
+			mHandler.post(runnable);
+		}
+	}
+}
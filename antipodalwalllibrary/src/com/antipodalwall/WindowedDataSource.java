@@ -0,0 +1,29 @@
+package com.antipodalwall;
+
+import java.util.List;
+
+/**
+ * Rows for a {@link WindowedAdapter}, e.g. from a SQLite table queried
+ * with LIMIT and OFFSET. Both methods are called on the adapter's
+ * background executor, never on the UI thread, so they are free to block.
+ *
+ * Anything that can answer a count and a range of rows will do - an
+ * in-memory database (SQLiteDatabase.create(null)) or a plain list works
+ * just as well in tests as the real database does in the app.
+ */
+public interface WindowedDataSource<T> {
+	/**
+	 * @return The total number of rows.
+	 */
+	int getCount();
+
+	/**
+	 * Loads a range of rows.
+	 *
+	 * @param start Position of the first row wanted.
+	 * @param count Number of rows wanted. Fewer may be returned at the end
+	 *            of the data.
+	 * @return The rows, in order.
+	 */
+	List<T> loadRows(int start, int count);
+}
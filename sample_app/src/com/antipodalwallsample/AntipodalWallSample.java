@@ -3,8 +3,10 @@ package com.antipodalwallsample;
 import com.antipodalwall.AntipodalWallLayout;
 
 import android.app.Activity;
+import android.content.Intent;
 import android.os.Bundle;
 import android.view.Menu;
+import android.view.MenuItem;
 import android.widget.TextView;
 
 public class AntipodalWallSample extends Activity {
@@ -27,5 +29,14 @@ public class AntipodalWallSample extends Activity {
         return true;
     }
 
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.menu_benchmark) {
+            startActivity(new Intent(this, BenchmarkActivity.class));
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
     
 }
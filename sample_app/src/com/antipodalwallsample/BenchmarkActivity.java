@@ -0,0 +1,272 @@
+package com.antipodalwallsample;
+
+import com.antipodalwall.AntipodalWallLayout;
+import com.antipodalwall.MemoryFootprint;
+import com.antipodalwall.ScrollProfiler;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Debug;
+import android.view.Choreographer;
+import android.widget.TextView;
+
+/**
+ * Puts the wall under load: fills it from a {@link BenchmarkAdapter} and
+ * runs a scripted loop of drags and flings over it, with live frame times,
+ * bind counts, recycle hit rate and memory use on an overlay.
+ *
+ * The load can be set with intent extras, e.g.
+ * <pre>adb shell am start -n com.antipodalwallsample/.BenchmarkActivity --ei itemCount 5000 --ei viewTypes 1 --ei heights 2</pre>
+ */
+public class BenchmarkActivity extends Activity {
+    /** Number of items, default 1000 */
+    public static final String EXTRA_ITEM_COUNT = "itemCount";
+
+    /** Number of view types to mix, 1 to 3, default 3 */
+    public static final String EXTRA_VIEW_TYPES = "viewTypes";
+
+    /** One of the BenchmarkAdapter.HEIGHTS_* constants, default uniform */
+    public static final String EXTRA_HEIGHT_DISTRIBUTION = "heights";
+
+    private static final int DEFAULT_ITEM_COUNT = 1000;
+
+    /** Step: drag {pixels per frame, frames} */
+    private static final int STEP_DRAG = 0;
+
+    /** Step: fling {velocity}, then wait for the wall to stop */
+    private static final int STEP_FLING = 1;
+
+    /** The script, run over and over. Positive values move down the wall. */
+    private static final int[][] SCRIPT = {
+        { STEP_DRAG, 8, 120 },
+        { STEP_FLING, 4000 },
+        { STEP_DRAG, -20, 60 },
+        { STEP_FLING, 12000 },
+        { STEP_FLING, -3000 },
+        { STEP_DRAG, 40, 90 },
+        { STEP_FLING, -20000 },
+        { STEP_FLING, -20000 },
+    };
+
+    private static final long FRAME_MS = 16;
+    private static final long OVERLAY_UPDATE_MS = 500;
+
+    private AntipodalWallLayout mWall;
+    private TextView mOverlay;
+    private BenchmarkAdapter mAdapter;
+    private final ScrollProfiler mProfiler = new ScrollProfiler();
+
+    /** Times frames on Jelly Bean and later, null before */
+    private FrameTimer mFrameTimer;
+
+    private boolean mRunning;
+    private int mStep;
+    private int mStepFrame;
+    private long mStartTime;
+
+    private final Runnable mScriptRunnable = new Runnable() {
+        public void run() {
+            runScript();
+        }
+    };
+
+    private final Runnable mOverlayRunnable = new Runnable() {
+        public void run() {
+            updateOverlay();
+            mOverlay.postDelayed(this, OVERLAY_UPDATE_MS);
+        }
+    };
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_benchmark);
+
+        Intent intent = getIntent();
+        mAdapter = new BenchmarkAdapter(this,
+                intent.getIntExtra(EXTRA_ITEM_COUNT, DEFAULT_ITEM_COUNT),
+                intent.getIntExtra(EXTRA_VIEW_TYPES, 3),
+                intent.getIntExtra(EXTRA_HEIGHT_DISTRIBUTION, BenchmarkAdapter.HEIGHTS_UNIFORM));
+
+        mWall = (AntipodalWallLayout) findViewById(R.id.benchmark_wall);
+        mOverlay = (TextView) findViewById(R.id.benchmark_overlay);
+        mWall.setScrollProfiler(mProfiler);
+        mWall.setAdapter(mAdapter);
+        mWall.setOnScrollListener(new AntipodalWallLayout.OnScrollListener() {
+            public void onScrollStateChanged(AntipodalWallLayout wall, int scrollState) {
+                // A fling step is done when the wall comes to rest.
+                if (mRunning && scrollState == SCROLL_STATE_IDLE && SCRIPT[mStep][0] == STEP_FLING) {
+                    nextStep();
+                    mWall.post(mScriptRunnable);
+                }
+            }
+
+            public void onScroll(AntipodalWallLayout wall, int firstVisiblePosition,
+                    int lastVisiblePosition, int totalItemCount) {
+            }
+        });
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)
+            mFrameTimer = new FrameTimer();
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        mRunning = true;
+        mStep = 0;
+        mStepFrame = 0;
+        mStartTime = System.currentTimeMillis();
+        mAdapter.resetCounts();
+        mProfiler.reset();
+        if (mFrameTimer != null)
+            mFrameTimer.start();
+        mWall.post(mScriptRunnable);
+        mOverlay.post(mOverlayRunnable);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        mRunning = false;
+        mWall.removeCallbacks(mScriptRunnable);
+        mOverlay.removeCallbacks(mOverlayRunnable);
+        if (mFrameTimer != null)
+            mFrameTimer.stop();
+    }
+
+    private void runScript() {
+        if (!mRunning)
+            return;
+        int[] step = SCRIPT[mStep];
+        if (step[0] == STEP_FLING) {
+            // Carries on from onScrollStateChanged(...) once it stops.
+            mWall.fling(step[1]);
+            if (mWall.getScrollState() == AntipodalWallLayout.OnScrollListener.SCROLL_STATE_IDLE) {
+                // Already at the end - nothing to wait for.
+                nextStep();
+                mWall.postDelayed(mScriptRunnable, FRAME_MS);
+            }
+            return;
+        }
+        mWall.scrollListBy(step[1]);
+        if (++mStepFrame >= step[2])
+            nextStep();
+        mWall.postDelayed(mScriptRunnable, FRAME_MS);
+    }
+
+    private void nextStep() {
+        mStep = (mStep + 1) % SCRIPT.length;
+        mStepFrame = 0;
+    }
+
+    private void updateOverlay() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Items: ").append(mAdapter.getCount())
+            .append("  step ").append(mStep + 1).append('/').append(SCRIPT.length)
+            .append("  ").append((System.currentTimeMillis() - mStartTime) / 1000).append("s\n");
+
+        if (mFrameTimer != null) {
+            sb.append("Frames: avg ").append(formatMs(mFrameTimer.getAverageNanos()))
+                .append(" max ").append(formatMs(mFrameTimer.getMaxNanos()))
+                .append(" janky ").append(mFrameTimer.getJankyFrames())
+                .append('/').append(mFrameTimer.getFrames()).append('\n');
+            mFrameTimer.reset();
+        } else {
+            sb.append("Frames: needs Android 4.1\n");
+        }
+        sb.append("Scroll step: p50 ")
+            .append(formatMs(mProfiler.getPercentile(ScrollProfiler.PHASE_SCROLL, 0.5)))
+            .append(" p99 ")
+            .append(formatMs(mProfiler.getPercentile(ScrollProfiler.PHASE_SCROLL, 0.99)))
+            .append(" bind p99 ")
+            .append(formatMs(mProfiler.getPercentile(ScrollProfiler.PHASE_BIND, 0.99))).append('\n');
+
+        int binds = mAdapter.getBindCount();
+        int recycled = mAdapter.getRecycledCount();
+        sb.append("Binds: ").append(binds)
+            .append("  recycle hits ").append(binds == 0 ? 0 : recycled * 100 / binds).append("%\n");
+
+        MemoryFootprint footprint = mWall.getMemoryFootprint();
+        Runtime runtime = Runtime.getRuntime();
+        long javaHeap = runtime.totalMemory() - runtime.freeMemory();
+        sb.append("Views: ").append(footprint.attachedViews).append(" attached, ")
+            .append(footprint.getOffscreenViews()).append(" held\n");
+        sb.append("Heap: ").append(javaHeap / 1024).append("K java, ")
+            .append(Debug.getNativeHeapAllocatedSize() / 1024).append("K native");
+        mOverlay.setText(sb);
+    }
+
+    private static String formatMs(long nanos) {
+        return (nanos / 100000) / 10f + "ms";
+    }
+
+    /**
+     * Measures the time between frames with Choreographer, which is only
+     * there from Jelly Bean on - kept in its own class so that older
+     * platforms never load it.
+     */
+    private static class FrameTimer implements Choreographer.FrameCallback {
+        /** A frame that took half as long again as one at 60fps */
+        private static final long JANK_NANOS = 25000000L;
+
+        private boolean mStarted;
+        private long mLastFrameNanos;
+        private long mTotalNanos;
+        private long mMaxNanos;
+        private int mFrames;
+        private int mJankyFrames;
+
+        void start() {
+            mStarted = true;
+            mLastFrameNanos = 0;
+            reset();
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void stop() {
+            mStarted = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        public void doFrame(long frameTimeNanos) {
+            if (!mStarted)
+                return;
+            if (mLastFrameNanos != 0) {
+                long nanos = frameTimeNanos - mLastFrameNanos;
+                mTotalNanos += nanos;
+                mMaxNanos = Math.max(mMaxNanos, nanos);
+                mFrames++;
+                if (nanos > JANK_NANOS)
+                    mJankyFrames++;
+            }
+            mLastFrameNanos = frameTimeNanos;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void reset() {
+            mTotalNanos = 0;
+            mMaxNanos = 0;
+            mFrames = 0;
+            mJankyFrames = 0;
+        }
+
+        long getAverageNanos() {
+            return mFrames == 0 ? 0 : mTotalNanos / mFrames;
+        }
+
+        long getMaxNanos() {
+            return mMaxNanos;
+        }
+
+        int getFrames() {
+            return mFrames;
+        }
+
+        int getJankyFrames() {
+            return mJankyFrames;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.antipodalwallsample;
+
+import java.util.Random;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.ImageView;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+/**
+ * A synthetic adapter for load testing the wall: any number of items, of up
+ * to three view types, with heights drawn from a choice of distributions.
+ * Counts how often it binds and how often it gets a view to re-use.
+ */
+public class BenchmarkAdapter extends BaseAdapter {
+    /** Every item is square */
+    public static final int HEIGHTS_FIXED = 0;
+
+    /** Heights spread evenly between 3/4 and twice the width */
+    public static final int HEIGHTS_UNIFORM = 1;
+
+    /** Mostly short items, with one in five very tall */
+    public static final int HEIGHTS_LONG_TAIL = 2;
+
+    /** A photo with a caption under it */
+    private static final int TYPE_PHOTO_CAPTION = 0;
+
+    /** A block of text */
+    private static final int TYPE_TEXT = 1;
+
+    /** Just a photo */
+    private static final int TYPE_PHOTO = 2;
+
+    private static final int MAX_VIEW_TYPES = 3;
+
+    /** Width the item sizes are given at - the wall scales them to fit */
+    private static final int ITEM_WIDTH = 300;
+
+    private static final int[] DOGS = {
+        R.drawable.dog_0, R.drawable.dog_1, R.drawable.dog_2, R.drawable.dog_3,
+        R.drawable.dog_4, R.drawable.dog_5, R.drawable.dog_6, R.drawable.dog_7,
+        R.drawable.dog_8, R.drawable.dog_9, R.drawable.dog_10, R.drawable.dog_11,
+        R.drawable.dog_12, R.drawable.dog_13, R.drawable.dog_14
+    };
+
+    private static final int[] TEXT_COLORS = {
+        0xffe57373, 0xff64b5f6, 0xff81c784, 0xffffb74d, 0xffba68c8
+    };
+
+    private final Context mContext;
+    private final int mViewTypeCount;
+    private final int[] mHeights;
+
+    private int mBindCount;
+    private int mRecycledCount;
+
+    /**
+     * @param context Used to create the item views.
+     * @param itemCount Number of items.
+     * @param viewTypeCount Number of view types to mix, 1 to 3.
+     * @param heightDistribution One of the HEIGHTS_* constants.
+     */
+    public BenchmarkAdapter(Context context, int itemCount, int viewTypeCount, int heightDistribution) {
+        mContext = context;
+        mViewTypeCount = Math.max(1, Math.min(MAX_VIEW_TYPES, viewTypeCount));
+        mHeights = new int[Math.max(0, itemCount)];
+        // Always the same seed, so that runs can be compared.
+        Random random = new Random(42);
+        for (int i = 0; i < mHeights.length; i++) {
+            mHeights[i] = pickHeight(random, heightDistribution);
+        }
+    }
+
+    private static int pickHeight(Random random, int heightDistribution) {
+        switch (heightDistribution) {
+        case HEIGHTS_FIXED:
+            return ITEM_WIDTH;
+        case HEIGHTS_LONG_TAIL:
+            if (random.nextInt(5) == 0)
+                return (int) (ITEM_WIDTH * (1.5f + random.nextFloat() * 2f));
+            return (int) (ITEM_WIDTH * (0.6f + random.nextFloat() * 0.6f));
+        default:
+            return (int) (ITEM_WIDTH * (0.75f + random.nextFloat() * 1.25f));
+        }
+    }
+
+    @Override
+    public int getCount() {
+        return mHeights.length;
+    }
+
+    @Override
+    public Object getItem(int position) {
+        return position;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public int getViewTypeCount() {
+        return mViewTypeCount;
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return position % mViewTypeCount;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        mBindCount++;
+        int type = getItemViewType(position);
+        View view = convertView;
+        if (view == null) {
+            view = createView(type);
+        } else {
+            mRecycledCount++;
+        }
+        bindView(view, type, position);
+        // Tell the wall the item's size, so it can scale it to the column.
+        view.measure(MeasureSpec.makeMeasureSpec(ITEM_WIDTH, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(mHeights[position], MeasureSpec.EXACTLY));
+        return view;
+    }
+
+    private View createView(int type) {
+        if (type == TYPE_TEXT) {
+            TextView text = new TextView(mContext);
+            text.setPadding(8, 8, 8, 8);
+            text.setTextColor(Color.BLACK);
+            return text;
+        }
+        ImageView image = new ImageView(mContext);
+        image.setScaleType(ImageView.ScaleType.CENTER_CROP);
+        if (type == TYPE_PHOTO)
+            return image;
+
+        LinearLayout card = new LinearLayout(mContext);
+        card.setOrientation(LinearLayout.VERTICAL);
+        card.setBackgroundColor(0xffdddddd);
+        card.setPadding(2, 2, 2, 2);
+        card.addView(image, new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.MATCH_PARENT, 0, 1));
+        card.addView(new TextView(mContext), new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.WRAP_CONTENT, LinearLayout.LayoutParams.WRAP_CONTENT));
+        return card;
+    }
+
+    private void bindView(View view, int type, int position) {
+        switch (type) {
+        case TYPE_TEXT:
+            view.setBackgroundColor(TEXT_COLORS[position % TEXT_COLORS.length]);
+            ((TextView) view).setText("Item " + position);
+            break;
+        case TYPE_PHOTO:
+            ((ImageView) view).setImageResource(DOGS[position % DOGS.length]);
+            break;
+        default:
+            LinearLayout card = (LinearLayout) view;
+            ((ImageView) card.getChildAt(0)).setImageResource(DOGS[position % DOGS.length]);
+            ((TextView) card.getChildAt(1)).setText("Dog " + position);
+            break;
+        }
+    }
+
+    /** @return The number of times getView(...) has been called. */
+    public int getBindCount() {
+        return mBindCount;
+    }
+
+    /** @return The number of those calls that were given a view to re-use. */
+    public int getRecycledCount() {
+        return mRecycledCount;
+    }
+
+    public void resetCounts() {
+        mBindCount = 0;
+        mRecycledCount = 0;
+    }
+}